@@ -0,0 +1,530 @@
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Benchmarks of the rules engine and the AI search.
+ *
+ * Every benchmark is run for a number of warm-up iterations, whose results are discarded, followed by a number of
+ * measured iterations. Each iteration repeats the benchmarked operation for at least {@value #ITERATION_NANOS} ns.
+ * The score of a benchmark is the mean of its measured iterations and its error is their standard deviation. The
+ * number of bytes allocated per operation is measured alongside every score.
+ *
+ * The benchmarks are kept apart from the game sources in the {@code bench} source set of the build and are run with:
+ * <pre>
+ * gradle bench -PbenchArgs="[--json results.json] [benchmark ...]"
+ * </pre>
+ * or, without the build, with {@code javac -d out src/*.java bench/*.java} and
+ * {@code java -cp out Benchmarks [--json results.json] [benchmark ...]}. Results written with {@code --json} can be
+ * compared between commits.
+ */
+public class Benchmarks
+{
+    private static final int WARMUP_ITERATIONS = 3;
+    private static final int MEASUREMENT_ITERATIONS = 5;
+
+    // Each iteration repeats its operation until at least this much time has passed
+    private static final long ITERATION_NANOS = 500_000_000L;
+
+    private static final int CORPUS_SIZE = 1000;
+    private static final long CORPUS_SEED = 375;
+
+    // The number of positions from the corpus that every search benchmark evaluates per iteration
+    private static final int SEARCH_POSITIONS = 8;
+
+    private static final int[] SEARCH_DEPTHS = {4, 6, 8, 10, 12};
+    private static final int SCALING_DEPTH = 10;
+    private static final int[] SEQUENTIAL_THRESHOLDS = {2, 3, 4, 6};
+    private static final int[] PARALLELISM_LEVELS = {1, 2, 4, 8, 16};
+    private static final int PERFT_DEPTH = 8;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    // Results of benchmarked operations are accumulated in a local checksum and added here once per batch, so that
+    // they cannot be optimised away without a volatile write in every operation
+    private static volatile long sink;
+
+    private final List<GameState> corpus;
+    private final List<Result> results = new ArrayList<>();
+
+    public Benchmarks(List<GameState> corpus)
+    {
+        this.corpus = corpus;
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        String jsonPath = null;
+        List<String> selected = new ArrayList<>();
+        for (int i = 0; i < args.length; i++)
+        {
+            if (args[i].equals("--json"))
+            {
+                jsonPath = args[++i];
+            }
+            else
+            {
+                selected.add(args[i]);
+            }
+        }
+
+        Benchmarks benchmarks = new Benchmarks(createCorpus(CORPUS_SIZE, CORPUS_SEED));
+        if (selected.isEmpty() || selected.contains("performMove"))
+        {
+            benchmarks.benchmarkPerformMove();
+        }
+        if (selected.isEmpty() || selected.contains("searchBoard"))
+        {
+            benchmarks.benchmarkSearchBoard();
+        }
+        if (selected.isEmpty() || selected.contains("perft"))
+        {
+            benchmarks.benchmarkPerft();
+        }
+        if (selected.isEmpty() || selected.contains("moveEvaluator"))
+        {
+            benchmarks.benchmarkMoveEvaluator();
+        }
+        if (selected.isEmpty() || selected.contains("parallelism"))
+        {
+            benchmarks.benchmarkParallelism();
+        }
+        if (selected.isEmpty() || selected.contains("granularity"))
+        {
+            benchmarks.benchmarkGranularity();
+        }
+        if (selected.isEmpty() || selected.contains("lazySmp"))
+        {
+            benchmarks.benchmarkLazySmp();
+        }
+
+        if (jsonPath != null)
+        {
+            benchmarks.writeJson(jsonPath);
+        }
+    }
+
+    /**
+     * Creates a corpus of realistic positions by playing games in which each move is the best move of a shallow
+     * search most of the time and a random move otherwise
+     */
+    public static List<GameState> createCorpus(int size, long seed)
+    {
+        Random random = new Random(seed);
+        List<GameState> corpus = new ArrayList<>();
+        while (corpus.size() < size)
+        {
+            GameState state = GameState.getInitialState();
+            while (!state.gameIsComplete() && corpus.size() < size)
+            {
+                corpus.add(state);
+                int move;
+                if (random.nextInt(10) < 7)
+                {
+                    MoveEvaluator moveEvaluator = new MoveEvaluator(state, 2);
+                    moveEvaluator.invoke();
+                    move = moveEvaluator.getBestChildMove();
+                }
+                else
+                {
+                    do
+                    {
+                        move = 1 + random.nextInt(GameState.SLOTS_PER_SIDE);
+                    }
+                    while (!GamePlayer.isValidMove(state, move));
+                }
+                state = GamePlayer.performMove(state, move);
+            }
+        }
+        return corpus;
+    }
+
+    /**
+     * Measures the throughput of performing every valid move of the positions in the corpus with
+     * {@link GamePlayer#performMove}
+     */
+    public void benchmarkPerformMove()
+    {
+        run("performMove", new LinkedHashMap<>(), "ops/s", () ->
+        {
+            long operations = 0;
+            long checksum = 0;
+            for (GameState state : corpus)
+            {
+                for (int move = 1; move <= GameState.SLOTS_PER_SIDE; move++)
+                {
+                    if (GamePlayer.isValidMove(state, move))
+                    {
+                        checksum += GamePlayer.performMove(state, move).getScore();
+                        operations++;
+                    }
+                }
+            }
+            sink += checksum;
+            return operations;
+        });
+    }
+
+    /**
+     * Measures the throughput of making and unmaking every valid move of the positions in the corpus on a
+     * {@link SearchBoard}, with and without evaluating the resulting positions
+     */
+    public void benchmarkSearchBoard()
+    {
+        List<SearchBoard> boards = new ArrayList<>();
+        for (GameState state : corpus)
+        {
+            boards.add(new SearchBoard(state));
+        }
+        run("searchBoard.makeUnmake", new LinkedHashMap<>(), "ops/s", () ->
+        {
+            long operations = 0;
+            long checksum = 0;
+            for (SearchBoard board : boards)
+            {
+                for (int move = 1; move <= GameState.SLOTS_PER_SIDE; move++)
+                {
+                    if (board.isValidMove(move))
+                    {
+                        board.makeMove(move);
+                        checksum += board.getHash();
+                        board.unmakeMove();
+                        operations++;
+                    }
+                }
+            }
+            sink += checksum;
+            return operations;
+        });
+        run("searchBoard.makeEvaluateUnmake", new LinkedHashMap<>(), "ops/s", () ->
+        {
+            long operations = 0;
+            long checksum = 0;
+            for (SearchBoard board : boards)
+            {
+                for (int move = 1; move <= GameState.SLOTS_PER_SIDE; move++)
+                {
+                    if (board.isValidMove(move))
+                    {
+                        board.makeMove(move);
+                        checksum += board.evaluate();
+                        board.unmakeMove();
+                        operations++;
+                    }
+                }
+            }
+            sink += checksum;
+            return operations;
+        });
+    }
+
+    /**
+     * Measures the number of positions generated per second by a perft count from the initial state with either
+     * implementation of the rules
+     */
+    public void benchmarkPerft()
+    {
+        SearchEngine engine = SearchEngine.getDefault();
+        GameState state = GameState.getInitialState();
+        Map<String, Object> params = new LinkedHashMap<>();
+        params.put("depth", PERFT_DEPTH);
+        params.put("rules", "GamePlayer");
+        run("perft", params, "positions/s", () -> Perft.countWithGamePlayer(state, PERFT_DEPTH, engine));
+        params = new LinkedHashMap<>(params);
+        params.put("rules", "SearchBoard");
+        run("perft", params, "positions/s", () -> Perft.countWithSearchBoard(state, PERFT_DEPTH, engine));
+    }
+
+    /**
+     * Measures the node throughput of complete searches of positions from the corpus at increasing depths
+     */
+    public void benchmarkMoveEvaluator()
+    {
+        SearchEngine engine = SearchEngine.getDefault();
+        for (int depth : SEARCH_DEPTHS)
+        {
+            Map<String, Object> params = new LinkedHashMap<>();
+            params.put("depth", depth);
+            params.put("parallelism", engine.getParallelism());
+            run("moveEvaluator", params, "nodes/s", () -> search(engine, depth));
+        }
+    }
+
+    /**
+     * Measures how the node throughput of searches scales with the parallelism of the fork/join pool, from 1 to 16
+     * threads whatever the number of available processors
+     */
+    public void benchmarkParallelism()
+    {
+        for (int parallelism : PARALLELISM_LEVELS)
+        {
+            try (SearchEngine engine = new SearchEngine(parallelism))
+            {
+                Map<String, Object> params = getParallelismParams(parallelism);
+                run("parallelism", params, "nodes/s", () -> search(engine, SCALING_DEPTH));
+            }
+        }
+    }
+
+    /**
+     * Measures the effect of the thresholds deciding which nodes fork their child moves on the node throughput of
+     * searches, with and without the limit on surplus queued tasks, for every parallelism of the pool. The number of
+     * nodes per search is printed as well, since together they give the time to depth.
+     */
+    public void benchmarkGranularity()
+    {
+        for (int parallelism : PARALLELISM_LEVELS)
+        {
+            try (SearchEngine engine = new SearchEngine(parallelism))
+            {
+                for (int sequentialThreshold : SEQUENTIAL_THRESHOLDS)
+                {
+                    for (int maxSurplusTasks : new int[] {MoveEvaluator.DEFAULT_MAX_SURPLUS_TASKS, Integer.MAX_VALUE})
+                    {
+                        SearchContext context = new SearchContext(null)
+                                .withForkThresholds(sequentialThreshold, maxSurplusTasks);
+                        Map<String, Object> params = getParallelismParams(parallelism);
+                        params.put("sequentialThreshold", sequentialThreshold);
+                        params.put("maxSurplusTasks", maxSurplusTasks == Integer.MAX_VALUE ? "none" : maxSurplusTasks);
+                        // Forking changes the number of nodes a search visits, so it is printed alongside
+                        long[] totals = new long[2];
+                        run("granularity", params, "nodes/s", () ->
+                        {
+                            long nodes = search(engine, SCALING_DEPTH, context);
+                            totals[0] += nodes;
+                            totals[1] += SEARCH_POSITIONS;
+                            return nodes;
+                        });
+                        System.out.printf("    %,.0f nodes per search%n", (double) totals[0] / totals[1]);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Measures the time to depth of the iterative-deepening fork/join search and of the Lazy SMP search with the
+     * parallelism of the pool, as the number of complete searches per second. The transposition table both depend on
+     * is cleared before every search.
+     */
+    public void benchmarkLazySmp()
+    {
+        TranspositionTable transpositionTable = new TranspositionTable(TranspositionTable.DEFAULT_SIZE_MB);
+        for (int parallelism : PARALLELISM_LEVELS)
+        {
+            try (SearchEngine engine = new SearchEngine(parallelism))
+            {
+                Map<String, Object> params = getParallelismParams(parallelism);
+                params.put("search", "forkJoin");
+                run("lazySmp", params, "searches/s", () -> searchToDepth(engine, transpositionTable, false));
+                params = new LinkedHashMap<>(params);
+                params.put("search", "lazySmp");
+                run("lazySmp", params, "searches/s", () -> searchToDepth(engine, transpositionTable, true));
+            }
+        }
+    }
+
+    // Searches positions spread evenly over the corpus from an empty transposition table to the scaling depth and
+    // returns the number of searches
+    private long searchToDepth(SearchEngine engine, TranspositionTable transpositionTable, boolean lazySmp)
+    {
+        long checksum = 0;
+        for (int i = 0; i < SEARCH_POSITIONS; i++)
+        {
+            GameState state = corpus.get(i * corpus.size() / SEARCH_POSITIONS);
+            transpositionTable.clear();
+            SearchContext context = new SearchContext(transpositionTable);
+            if (lazySmp)
+            {
+                LazySmpSearch search = new LazySmpSearch(context, 0, SCALING_DEPTH);
+                checksum += search.search(state, engine);
+            }
+            else
+            {
+                IterativeDeepeningSearch search = new IterativeDeepeningSearch(context, 0, SCALING_DEPTH);
+                checksum += search.search(state, engine);
+            }
+        }
+        sink += checksum;
+        return SEARCH_POSITIONS;
+    }
+
+    // Creates the parameters of a run with the specified parallelism. Every level is run on every machine so that the
+    // results compare between machines, and the levels above the number of available processors are labelled.
+    private static Map<String, Object> getParallelismParams(int parallelism)
+    {
+        Map<String, Object> params = new LinkedHashMap<>();
+        params.put("depth", SCALING_DEPTH);
+        params.put("parallelism", parallelism);
+        params.put("oversubscribed", parallelism > Runtime.getRuntime().availableProcessors());
+        return params;
+    }
+
+    // Searches positions spread evenly over the corpus and returns the number of nodes visited
+    private long search(SearchEngine engine, int depth)
+    {
+        return search(engine, depth, new SearchContext(null));
+    }
+
+    private long search(SearchEngine engine, int depth, SearchContext context)
+    {
+        long nodes = 0;
+        long checksum = 0;
+        for (int i = 0; i < SEARCH_POSITIONS; i++)
+        {
+            GameState state = corpus.get(i * corpus.size() / SEARCH_POSITIONS);
+            MoveEvaluator moveEvaluator = new MoveEvaluator(state, depth, context);
+            engine.invoke(moveEvaluator);
+            checksum += moveEvaluator.getBestChildMove();
+            nodes += moveEvaluator.getNodeCount();
+        }
+        sink += checksum;
+        return nodes;
+    }
+
+    /**
+     * A benchmarked operation, which returns the number of operations it performed
+     */
+    public interface Operation
+    {
+        long run();
+    }
+
+    /**
+     * Runs the warm-up and measured iterations of a benchmark, records its result and prints it
+     */
+    public Result run(String name, Map<String, Object> params, String unit, Operation operation)
+    {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++)
+        {
+            runIteration(operation);
+        }
+
+        double[] scores = new double[MEASUREMENT_ITERATIONS];
+        long totalOperations = 0;
+        long totalAllocatedBytes = 0;
+        for (int i = 0; i < MEASUREMENT_ITERATIONS; i++)
+        {
+            long allocatedBytes = getAllocatedBytes();
+            long start = System.nanoTime();
+            long operations = runIteration(operation);
+            long elapsed = System.nanoTime() - start;
+            totalAllocatedBytes += getAllocatedBytes() - allocatedBytes;
+            totalOperations += operations;
+            scores[i] = operations * 1e9 / elapsed;
+        }
+
+        Result result = new Result(name, params, unit, scores,
+                totalOperations == 0 ? 0 : (double) totalAllocatedBytes / totalOperations);
+        results.add(result);
+        System.out.println(result);
+        return result;
+    }
+
+    // Repeats the operation until the iteration time has passed and returns the total number of operations
+    private static long runIteration(Operation operation)
+    {
+        long start = System.nanoTime();
+        long operations = 0;
+        do
+        {
+            operations += operation.run();
+        }
+        while (System.nanoTime() - start < ITERATION_NANOS);
+        return operations;
+    }
+
+    // Gets the number of bytes allocated by all live threads, which includes the threads of every fork/join pool
+    private static long getAllocatedBytes()
+    {
+        long total = 0;
+        for (long allocated : THREADS.getThreadAllocatedBytes(THREADS.getAllThreadIds()))
+        {
+            if (allocated > 0)
+            {
+                total += allocated;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Writes the results of all benchmarks run so far to the specified file as a JSON array
+     */
+    public void writeJson(String path) throws IOException
+    {
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(Paths.get(path))))
+        {
+            out.println("[");
+            for (int i = 0; i < results.size(); i++)
+            {
+                out.print("  " + results.get(i).toJson());
+                out.println(i < results.size() - 1 ? "," : "");
+            }
+            out.println("]");
+        }
+    }
+
+    /**
+     * The result of a single benchmark
+     */
+    public static class Result
+    {
+        private final String name;
+        private final Map<String, Object> params;
+        private final String unit;
+        private final double score;
+        private final double error;
+        private final double allocatedBytesPerOperation;
+
+        public Result(String name, Map<String, Object> params, String unit, double[] scores,
+                      double allocatedBytesPerOperation)
+        {
+            this.name = name;
+            this.params = params;
+            this.unit = unit;
+            this.score = Arrays.stream(scores).average().orElse(0);
+            this.error = Math.sqrt(Arrays.stream(scores).map(s -> (s - score) * (s - score)).sum()
+                    / Math.max(scores.length - 1, 1));
+            this.allocatedBytesPerOperation = allocatedBytesPerOperation;
+        }
+
+        public double getScore()
+        {
+            return score;
+        }
+
+        public String toJson()
+        {
+            StringBuilder json = new StringBuilder();
+            json.append("{\"benchmark\": \"").append(name).append("\", \"params\": {");
+            int i = 0;
+            for (Map.Entry<String, Object> param : params.entrySet())
+            {
+                json.append(i++ > 0 ? ", " : "")
+                        .append('"').append(param.getKey()).append("\": \"").append(param.getValue()).append('"');
+            }
+            json.append("}, \"primaryMetric\": {\"score\": ").append(score)
+                    .append(", \"scoreError\": ").append(error)
+                    .append(", \"scoreUnit\": \"").append(unit).append("\"}")
+                    .append(", \"secondaryMetrics\": {\"alloc.rate.norm\": {\"score\": ")
+                    .append(allocatedBytesPerOperation).append(", \"scoreUnit\": \"B/op\"}}}");
+            return json.toString();
+        }
+
+        public String toString()
+        {
+            return String.format("%-24s %-28s %16.0f +- %-12.0f %-8s %10.1f B/op",
+                    name, params, score, error, unit, allocatedBytesPerOperation);
+        }
+    }
+}
@@ -1,13 +1,42 @@
-import java.io.IOException;
-import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * A computer player that will recursively calculate its next move by evaluating the state space of the possible moves
- * to the specified depth
+ * either to the specified depth or for as long as its time budget allows. The player can also search while its
+ * opponent is choosing their move (see {@link #ponder}).
  */
 public class AI implements Player
 {
+    // The depth of the search predicting the opponent's move when the transposition table does not know it
+    private static final int PREDICTION_DEPTH = 4;
+
+    private static ExecutorService ponderExecutor;
+
     private int depth;
+    private long timeBudgetMillis;
+    private long moveTimeLimitMillis;
+    private boolean lazySmp;
+    private TranspositionTable transpositionTable;
+    private boolean agingTranspositionTable = true;
+    private MoveOrdering moveOrdering = new MoveOrdering();
+    private EndgameDatabase endgameDatabase = EndgameDatabase.getDefault();
+    private EvaluationWeights evaluationWeights = EvaluationWeights.getDefault();
+    private OpeningBook openingBook = OpeningBook.getDefault();
+    private SearchEngine engine;
+    private SearchMetrics metrics = SearchMetrics.getDefault();
+    private CancellationToken cancellationToken;
+
+    private volatile SearchStats lastSearchStats;
+
+    // The search started while the opponent is choosing their move, the hash of the state it searches and its
+    // completion
+    private Search ponderSearch;
+    private long ponderHash;
+    private CompletableFuture<Void> ponderResult;
+    private int ponderHits;
+    private int ponderMisses;
 
     /**
      * Creates a computer player
@@ -15,22 +44,472 @@ public class AI implements Player
      *              through to determine its next move.
      */
     public AI(int depth)
+    {
+        this(depth, TranspositionTable.DEFAULT_SIZE_MB, SearchEngine.getDefault());
+    }
+
+    /**
+     * Creates a computer player
+     * @param depth the number of levels in the state space of possible moves that the computer should search
+     *              through to determine its next move.
+     * @param transpositionTableSizeInMB the amount of memory used to remember previously evaluated states
+     */
+    public AI(int depth, int transpositionTableSizeInMB)
+    {
+        this(depth, transpositionTableSizeInMB, SearchEngine.getDefault());
+    }
+
+    /**
+     * Creates a computer player
+     * @param depth the number of levels in the state space of possible moves that the computer should search
+     *              through to determine its next move.
+     * @param transpositionTableSizeInMB the amount of memory used to remember previously evaluated states
+     * @param engine the engine in which the computer runs its searches
+     */
+    public AI(int depth, int transpositionTableSizeInMB, SearchEngine engine)
+    {
+        this(depth, new TranspositionTable(transpositionTableSizeInMB), engine);
+    }
+
+    /**
+     * Creates a computer player
+     * @param depth the number of levels in the state space of possible moves that the computer should search
+     *              through to determine its next move.
+     * @param transpositionTable the table used to remember previously evaluated states, which may be shared with
+     *                           other computer players
+     * @param engine the engine in which the computer runs its searches
+     */
+    public AI(int depth, TranspositionTable transpositionTable, SearchEngine engine)
     {
         this.depth = depth;
+        this.transpositionTable = transpositionTable;
+        this.engine = engine;
+    }
+
+    /**
+     * Creates a computer player that searches the state space of possible moves ever deeper until the specified
+     * amount of time has passed
+     * @param timeBudgetMillis the wall-clock time the computer may take to determine each move, in milliseconds
+     */
+    public static AI withTimeBudget(long timeBudgetMillis)
+    {
+        return withTimeBudget(timeBudgetMillis, TranspositionTable.DEFAULT_SIZE_MB, SearchEngine.getDefault());
+    }
+
+    /**
+     * Creates a computer player that searches the state space of possible moves ever deeper until the specified
+     * amount of time has passed
+     * @param timeBudgetMillis the wall-clock time the computer may take to determine each move, in milliseconds
+     * @param transpositionTableSizeInMB the amount of memory used to remember previously evaluated states
+     * @param engine the engine in which the computer runs its searches
+     */
+    public static AI withTimeBudget(long timeBudgetMillis, int transpositionTableSizeInMB, SearchEngine engine)
+    {
+        return withTimeBudget(timeBudgetMillis, new TranspositionTable(transpositionTableSizeInMB), engine);
     }
 
     /**
-     * Recursively evaluates the state space of possible moves up to the specified depth and then chooses the best
-     * possible move from this information.
+     * Creates a computer player that searches the state space of possible moves ever deeper until the specified
+     * amount of time has passed
+     * @param timeBudgetMillis the wall-clock time the computer may take to determine each move, in milliseconds
+     * @param transpositionTable the table used to remember previously evaluated states, which may be shared with
+     *                           other computer players
+     * @param engine the engine in which the computer runs its searches
+     */
+    public static AI withTimeBudget(long timeBudgetMillis, TranspositionTable transpositionTable,
+                                    SearchEngine engine)
+    {
+        AI ai = new AI(0, transpositionTable, engine);
+        ai.timeBudgetMillis = timeBudgetMillis;
+        return ai;
+    }
+
+    /**
+     * Recursively evaluates the state space of possible moves up to the specified depth, or within the time budget,
+     * and then chooses the best possible move from this information. States found in the opening book are not
+     * evaluated at all, and states this player has been {@linkplain #ponder pondering} on continue the search in
+     * progress.
      * @param state the current state of the game
      * @return the next move this player should perform
+     * @throws SearchCancelledException if the {@linkplain #setCancellationToken cancellation token} of this player
+     *                                  is cancelled before the move is chosen
      */
     public int chooseNextMove(GameState state)
     {
-        ForkJoinPool pool = new ForkJoinPool();
-        MoveEvaluator moveEvaluator = new MoveEvaluator(state, depth);
-        pool.invoke(moveEvaluator);
-        System.out.println("Computer performed move: " + moveEvaluator.getBestChildMove());
+        long start = System.nanoTime();
+        Search search = null;
+        if (ponderSearch != null)
+        {
+            if (ponderHash == Zobrist.hash(state))
+            {
+                // The opponent made the predicted move, so the search already in progress is the one for this move
+                ponderHits++;
+                search = ponderSearch;
+                search.resume(start);
+                ponderResult.join();
+                ponderSearch = null;
+                ponderResult = null;
+            }
+            else
+            {
+                ponderMisses++;
+                stopPondering();
+            }
+        }
+
+        if (search == null)
+        {
+            int bookMove = openingBook == null ? -1 : openingBook.getMove(state);
+            if (bookMove != -1)
+            {
+                long elapsedNanos = System.nanoTime() - start;
+                lastSearchStats = new SearchStats(bookMove, 0, 0, 0, elapsedNanos, 0, 0, 0, 0);
+                metrics.recordBookMove(elapsedNanos);
+                return bookMove;
+            }
+            search = new Search(state, false);
+            search.run();
+        }
+        if (search.isCancelled())
+        {
+            throw new SearchCancelledException();
+        }
+
+        SearchStats stats = search.getStats(System.nanoTime() - start);
+        metrics.recordSearch(stats);
+        lastSearchStats = stats;
+        return stats.getMove();
+    }
+
+    /**
+     * Starts searching in the background while the opponent is choosing their move. The opponent's most likely move
+     * is predicted and the state it leads to is searched as if it were this player's turn. If the opponent then
+     * makes the predicted move, the next call to {@link #chooseNextMove} continues the search in progress instead of
+     * starting over; otherwise the search is stopped and a new one is started. Both searches share the
+     * transposition table, so even a wrong prediction often speeds up the next search.
+     * @param state the state of the game after this player's move, in which it is the opponent's turn
+     */
+    public void ponder(GameState state)
+    {
+        stopPondering();
+        PlayerRepresentation player = PlayerRepresentation.getOpposite(state.getActivePlayer());
+        GameState predictedState = state;
+        while (!predictedState.gameIsComplete() && predictedState.getActivePlayer() != player)
+        {
+            predictedState = GamePlayer.performMove(predictedState, predictMove(predictedState));
+        }
+        if (predictedState.gameIsComplete()
+                || (openingBook != null && openingBook.getMove(predictedState) != -1))
+        {
+            return;
+        }
+
+        ponderHash = Zobrist.hash(predictedState);
+        ponderSearch = new Search(predictedState, true);
+        ponderResult = CompletableFuture.runAsync(ponderSearch::run, getPonderExecutor());
+    }
+
+    /**
+     * Stops the search started by {@link #ponder}, if any, and waits for it to finish
+     */
+    public void stopPondering()
+    {
+        if (ponderSearch != null)
+        {
+            ponderSearch.cancel();
+            ponderResult.join();
+            ponderSearch = null;
+            ponderResult = null;
+        }
+    }
+
+    // Predicts the opponent's move from the transposition table, which holds the best reply found by the previous
+    // search, or with a shallow search if the table does not know the state
+    private int predictMove(GameState state)
+    {
+        long entry = transpositionTable.probe(Zobrist.hash(state));
+        int move = entry == 0 ? -1 : TranspositionTable.getMove(entry);
+        if (GamePlayer.isValidMove(state, move))
+        {
+            return move;
+        }
+        MoveEvaluator moveEvaluator = new MoveEvaluator(state, PREDICTION_DEPTH,
+                new SearchContext(transpositionTable, new MoveOrdering(), SearchContext.NO_DEADLINE)
+                        .withEvaluationWeights(evaluationWeights));
+        engine.invoke(moveEvaluator);
         return moveEvaluator.getBestChildMove();
     }
+
+    private static synchronized ExecutorService getPonderExecutor()
+    {
+        if (ponderExecutor == null)
+        {
+            ponderExecutor = Executors.newCachedThreadPool(runnable ->
+            {
+                Thread thread = new Thread(runnable, "mancala-ponder");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return ponderExecutor;
+    }
+
+    /**
+     * Gets the number of moves for which the opponent made the predicted move while this player was pondering
+     */
+    public int getPonderHitCount()
+    {
+        return ponderHits;
+    }
+
+    /**
+     * Gets the number of moves for which the opponent did not make the predicted move while this player was
+     * pondering
+     */
+    public int getPonderMissCount()
+    {
+        return ponderMisses;
+    }
+
+    /**
+     * Gets the statistics of the search that determined this player's last move, or null if it has not moved yet
+     */
+    public SearchStats getLastSearchStats()
+    {
+        return lastSearchStats;
+    }
+
+    /**
+     * Sets the database of exact values of states with few stones left that this player consults during its
+     * searches, or null to search such states like any other. By default the database named by the
+     * {@value EndgameDatabase#DEFAULT_PATH_PROPERTY} system property is used.
+     */
+    public void setEndgameDatabase(EndgameDatabase endgameDatabase)
+    {
+        this.endgameDatabase = endgameDatabase;
+    }
+
+    /**
+     * Sets whether every search of this player starts a new generation of its transposition table, which makes the
+     * entries of earlier searches the first to be replaced. Players sharing a table with many concurrent players
+     * should leave aging the table to its owner, since each of them would otherwise turn the fresh entries of all
+     * the others into old ones. By default every search ages the table.
+     */
+    public void setTranspositionTableAging(boolean agingTranspositionTable)
+    {
+        this.agingTranspositionTable = agingTranspositionTable;
+    }
+
+    /**
+     * Sets the weights of the features this player evaluates states by at the horizon of its searches. Players
+     * sharing a transposition table must use the same weights. By default {@link EvaluationWeights#getDefault()} is
+     * used.
+     */
+    public void setEvaluationWeights(EvaluationWeights evaluationWeights)
+    {
+        this.evaluationWeights = evaluationWeights;
+    }
+
+    /**
+     * Sets whether this player searches with a {@link LazySmpSearch}, in which every thread of its engine runs an
+     * independent search sharing the transposition table, instead of splitting a single search between the threads.
+     * By default a single search is split.
+     */
+    public void setLazySmp(boolean lazySmp)
+    {
+        this.lazySmp = lazySmp;
+    }
+
+    /**
+     * Sets a hard limit on the time this player may take to choose each move, in milliseconds, or 0 for no limit.
+     * Once the limit has passed the search is stopped and the best move of the deepest iteration completed so far is
+     * chosen, so a player searching to a fixed depth searches iteratively while it has a limit. The limit also caps
+     * the time budget of a player that has one.
+     */
+    public void setMoveTimeLimit(long moveTimeLimitMillis)
+    {
+        this.moveTimeLimitMillis = moveTimeLimitMillis;
+    }
+
+    /**
+     * Sets the token through which the searches of this player can be cancelled from other threads, or null if only
+     * the searches started by {@link #ponder} are ever cancelled. Once the token is cancelled, the search in progress
+     * and all later ones stop within a few milliseconds and {@link #chooseNextMove} throws a
+     * {@link SearchCancelledException} instead of returning a move.
+     */
+    public void setCancellationToken(CancellationToken cancellationToken)
+    {
+        this.cancellationToken = cancellationToken;
+    }
+
+    /**
+     * Sets the book of precomputed moves this player consults before searching, or null to always search. By default
+     * the book named by the {@value OpeningBook#DEFAULT_PATH_PROPERTY} system property is used.
+     */
+    public void setOpeningBook(OpeningBook openingBook)
+    {
+        this.openingBook = openingBook;
+    }
+
+    /**
+     * Sets the metrics this player records the statistics of its moves into. By default the
+     * {@linkplain SearchMetrics#getDefault() default metrics} are used.
+     */
+    public void setMetrics(SearchMetrics metrics)
+    {
+        this.metrics = metrics;
+    }
+
+    public TranspositionTable getTranspositionTable()
+    {
+        return transpositionTable;
+    }
+
+    /**
+     * Resets the search state of this player, see {@link #resetSearchState}
+     */
+    public void newGame()
+    {
+        resetSearchState();
+    }
+
+    /**
+     * Forgets what this player learned from its previous searches, so that its next move is chosen exactly as a new
+     * player would choose it: pondering is stopped, the transposition table is cleared and the move ordering starts
+     * over. The table must not be shared with other players.
+     */
+    public void resetSearchState()
+    {
+        stopPondering();
+        transpositionTable.clear();
+        moveOrdering = new MoveOrdering();
+    }
+
+    // Gets the time the search for a move may take: the time budget, capped by the time limit, or 0 if this player
+    // has neither
+    private long getMoveBudgetMillis()
+    {
+        if (timeBudgetMillis > 0 && moveTimeLimitMillis > 0)
+        {
+            return Math.min(timeBudgetMillis, moveTimeLimitMillis);
+        }
+        return Math.max(timeBudgetMillis, moveTimeLimitMillis);
+    }
+
+    // A single search for the best move in a state, which either runs directly or is started in the background while
+    // the opponent is choosing their move. Each search has its own cancellation token, which is also cancelled by the
+    // token of the player.
+    private class Search
+    {
+        private final GameState state;
+        private final CancellationToken searchCancellationToken;
+        private final SearchContext context;
+        private final IterativeDeepeningSearch iterativeDeepeningSearch;
+        private final LazySmpSearch lazySmpSearch;
+        private final long stealCount;
+
+        private int move;
+        private int fitness;
+        private int completedDepth;
+        private long nodeCount;
+        private long forkCount;
+        private boolean cancelled;
+
+        // A search started while pondering runs without a time budget until the opponent's move arrives
+        private Search(GameState state, boolean pondering)
+        {
+            this.state = state;
+            this.stealCount = engine.getStealCount();
+            if (agingTranspositionTable)
+            {
+                transpositionTable.newSearch();
+            }
+            moveOrdering.newSearch();
+            this.searchCancellationToken = new CancellationToken(cancellationToken);
+            this.context = new SearchContext(transpositionTable, moveOrdering, SearchContext.NO_DEADLINE)
+                    .withEndgameDatabase(endgameDatabase)
+                    .withEvaluationWeights(evaluationWeights)
+                    .withCancellationToken(searchCancellationToken);
+
+            long budgetMillis = pondering ? 0 : getMoveBudgetMillis();
+            int maxDepth = timeBudgetMillis > 0 ? IterativeDeepeningSearch.MAX_DEPTH : depth;
+            this.iterativeDeepeningSearch = !lazySmp && (timeBudgetMillis > 0 || moveTimeLimitMillis > 0)
+                    ? new IterativeDeepeningSearch(context, budgetMillis, maxDepth)
+                    : null;
+            this.lazySmpSearch = lazySmp ? new LazySmpSearch(context, budgetMillis, maxDepth) : null;
+        }
+
+        private void run()
+        {
+            try
+            {
+                if (lazySmpSearch != null)
+                {
+                    move = lazySmpSearch.search(state, engine);
+                    fitness = lazySmpSearch.getFitness();
+                    completedDepth = lazySmpSearch.getCompletedDepth();
+                    nodeCount = lazySmpSearch.getNodeCount();
+                }
+                else if (iterativeDeepeningSearch != null)
+                {
+                    move = iterativeDeepeningSearch.search(state, engine);
+                    fitness = iterativeDeepeningSearch.getFitness();
+                    completedDepth = iterativeDeepeningSearch.getCompletedDepth();
+                    nodeCount = iterativeDeepeningSearch.getNodeCount();
+                    forkCount = iterativeDeepeningSearch.getForkCount();
+                }
+                else
+                {
+                    MoveEvaluator moveEvaluator = new MoveEvaluator(state, depth, context);
+                    engine.invoke(moveEvaluator);
+                    move = moveEvaluator.getBestChildMove();
+                    fitness = moveEvaluator.getMaxChildFitness();
+                    completedDepth = depth;
+                    nodeCount = moveEvaluator.getNodeCount();
+                    forkCount = moveEvaluator.getForkCount();
+                }
+            }
+            catch (SearchCancelledException e)
+            {
+                // The result of a cancelled search is discarded
+                cancelled = true;
+            }
+        }
+
+        // Gives a search started while pondering the time budget of a move that started at the specified time
+        private void resume(long start)
+        {
+            long budgetMillis = getMoveBudgetMillis();
+            if (budgetMillis == 0)
+            {
+                return;
+            }
+            long deadline = start + budgetMillis * 1_000_000;
+            if (iterativeDeepeningSearch != null)
+            {
+                iterativeDeepeningSearch.setDeadline(deadline);
+            }
+            else if (lazySmpSearch != null)
+            {
+                lazySmpSearch.setDeadline(deadline);
+            }
+        }
+
+        private void cancel()
+        {
+            searchCancellationToken.cancel();
+        }
+
+        private boolean isCancelled()
+        {
+            return cancelled;
+        }
+
+        private SearchStats getStats(long elapsedNanos)
+        {
+            return new SearchStats(move, fitness, completedDepth, nodeCount, elapsedNanos, forkCount,
+                    engine.getStealCount() - stealCount, moveOrdering.getCutoffCount(),
+                    moveOrdering.getFirstMoveCutoffCount());
+        }
+    }
 }
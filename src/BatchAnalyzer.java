@@ -0,0 +1,308 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Analyses a stream of positions, one per line, and writes the best move and fitness of each position in the order
+ * the positions were read.
+ *
+ * Positions are analysed concurrently by a fixed number of computer players, each position from an empty
+ * transposition table so that its result does not depend on which player analyses it, while at most a bounded number of
+ * positions are read ahead of the last result written, so the input is never held in memory as a whole and a slow
+ * output slows down reading.
+ *
+ * A position is written as the active player (L or R) followed by the active player's slots 1 to 6, their store,
+ * the opponent's slots 1 to 6 and the opponent's store, for example {@code L 4 4 4 4 4 4 0 4 4 4 4 4 4 0}. Blank lines
+ * and lines starting with # are copied to the output. For every position the output holds a tab-separated line with
+ * the position, the best move, its fitness for the active player in stones, the depth searched, the number of states
+ * visited and the time taken in milliseconds, or the position followed by {@code ERROR} and a message.
+ */
+public class BatchAnalyzer
+{
+    public static final int DEFAULT_MAX_IN_FLIGHT = 256;
+
+    private final Supplier<AI> players;
+    private final int concurrency;
+    private final int maxInFlight;
+
+    /**
+     * Creates an analyzer
+     * @param players creates the computer players analysing the positions, one per concurrent analysis
+     * @param concurrency the number of positions analysed at the same time
+     * @param maxInFlight the largest number of positions read but not yet written
+     */
+    public BatchAnalyzer(Supplier<AI> players, int concurrency, int maxInFlight)
+    {
+        if (concurrency <= 0 || maxInFlight < concurrency)
+        {
+            throw new IllegalArgumentException("Invalid concurrency or in-flight limit");
+        }
+        this.players = players;
+        this.concurrency = concurrency;
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * Analyses positions from a file, or from standard input, and writes the results to standard output or a file.
+     * Usage: {@code BatchAnalyzer <difficulty> [<input file>|-] [--output <file>] [--threads <concurrent analyses>]
+     * [--in-flight <positions>]}
+     */
+    public static void main(String[] args) throws IOException, InterruptedException
+    {
+        if (args.length == 0)
+        {
+            System.err.println("Usage: BatchAnalyzer <difficulty> [<input file>|-] [--output <file>] "
+                    + "[--threads <concurrent analyses>] [--in-flight <positions>]");
+            System.exit(1);
+        }
+        Difficulty difficulty = Difficulty.parse(args[0]);
+        if (difficulty.isMonteCarlo())
+        {
+            System.err.println("Monte Carlo computers cannot analyse positions");
+            System.exit(1);
+        }
+        String input = "-";
+        String output = null;
+        int concurrency = Runtime.getRuntime().availableProcessors();
+        int maxInFlight = DEFAULT_MAX_IN_FLIGHT;
+        for (int i = 1; i < args.length; i++)
+        {
+            switch (args[i])
+            {
+                case "--output":
+                    output = args[++i];
+                    break;
+                case "--threads":
+                    concurrency = Integer.parseInt(args[++i]);
+                    break;
+                case "--in-flight":
+                    maxInFlight = Integer.parseInt(args[++i]);
+                    break;
+                default:
+                    input = args[i];
+            }
+        }
+
+        BatchAnalyzer analyzer = new BatchAnalyzer(
+                () -> (AI) difficulty.createAI(), concurrency, Math.max(maxInFlight, concurrency));
+        try (BufferedReader in = input.equals("-")
+                ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+                : Files.newBufferedReader(Paths.get(input));
+             Writer out = output == null
+                     ? new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8))
+                     : Files.newBufferedWriter(Paths.get(output)))
+        {
+            analyzer.analyze(in, out);
+        }
+    }
+
+    /**
+     * Analyses every position read from the input and writes the results to the output in input order. The output
+     * is flushed before waiting for a result.
+     */
+    public void analyze(BufferedReader in, Writer out) throws IOException, InterruptedException
+    {
+        BlockingQueue<AI> idlePlayers = new ArrayBlockingQueue<>(concurrency);
+        for (int i = 0; i < concurrency; i++)
+        {
+            AI player = players.get();
+            // Book moves come without a fitness, so every position is searched
+            player.setOpeningBook(null);
+            idlePlayers.add(player);
+        }
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency, runnable ->
+        {
+            Thread thread = new Thread(runnable, "mancala-analysis-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        Deque<CompletableFuture<String>> pending = new ArrayDeque<>();
+        try
+        {
+            String line;
+            while ((line = in.readLine()) != null)
+            {
+                String position = line.trim();
+                if (position.isEmpty() || position.startsWith("#"))
+                {
+                    pending.add(CompletableFuture.completedFuture(line));
+                }
+                else
+                {
+                    pending.add(CompletableFuture.supplyAsync(() -> analyze(position, idlePlayers), executor));
+                }
+
+                // Results are written as soon as all earlier ones are, and reading stops at the in-flight limit
+                // until the oldest position has been analysed
+                while (!pending.isEmpty() && (pending.peek().isDone() || pending.size() >= maxInFlight))
+                {
+                    CompletableFuture<String> oldest = pending.poll();
+                    if (!oldest.isDone())
+                    {
+                        out.flush();
+                    }
+                    writeLine(out, oldest.join());
+                }
+            }
+            while (!pending.isEmpty())
+            {
+                writeLine(out, pending.poll().join());
+            }
+            out.flush();
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void writeLine(Writer out, String line) throws IOException
+    {
+        out.write(line);
+        out.write(System.lineSeparator());
+    }
+
+    // Analyses a single position with an idle player, returning the output line
+    private static String analyze(String position, BlockingQueue<AI> idlePlayers)
+    {
+        GameState state;
+        try
+        {
+            state = parsePosition(position);
+        }
+        catch (IllegalArgumentException e)
+        {
+            return position + "\tERROR\t" + e.getMessage();
+        }
+        if (state.gameIsComplete())
+        {
+            return position + "\tERROR\tGame is complete";
+        }
+
+        AI player;
+        try
+        {
+            player = idlePlayers.take();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            return position + "\tERROR\tInterrupted";
+        }
+        try
+        {
+            // Every position is searched from an empty table, so that its result does not depend on the positions
+            // the player analysed before
+            player.resetSearchState();
+            player.chooseNextMove(state);
+            SearchStats stats = player.getLastSearchStats();
+            return String.format("%s\t%d\t%.2f\t%d\t%d\t%.1f", position, stats.getMove(),
+                    stats.getFitness() / (double) EvaluationWeights.STONE,
+                    stats.getDepth(), stats.getNodeCount(), stats.getElapsedNanos() / 1e6);
+        }
+        catch (RuntimeException e)
+        {
+            // A failed search only fails its own position
+            return position + "\tERROR\t" + e;
+        }
+        finally
+        {
+            idlePlayers.add(player);
+        }
+    }
+
+    /**
+     * Parses a position written as the active player (L or R) followed by the active player's slots 1 to 6, their
+     * store, the opponent's slots 1 to 6 and the opponent's store
+     * @throws IllegalArgumentException if the position is malformed
+     */
+    public static GameState parsePosition(String position)
+    {
+        String[] tokens = position.trim().split("\\s+");
+        int sides = GameState.SLOTS_PER_SIDE + 1;
+        if (tokens.length != 1 + 2 * sides)
+        {
+            throw new IllegalArgumentException("Expected a player and " + 2 * sides + " numbers");
+        }
+        PlayerRepresentation activePlayer;
+        switch (tokens[0].toUpperCase())
+        {
+            case "L":
+            case "LEFT":
+                activePlayer = PlayerRepresentation.LEFT;
+                break;
+            case "R":
+            case "RIGHT":
+                activePlayer = PlayerRepresentation.RIGHT;
+                break;
+            default:
+                throw new IllegalArgumentException("Invalid player: " + tokens[0]);
+        }
+
+        int[] numbers = new int[2 * sides];
+        int stones = 0;
+        for (int i = 0; i < numbers.length; i++)
+        {
+            try
+            {
+                numbers[i] = Integer.parseInt(tokens[i + 1]);
+            }
+            catch (NumberFormatException e)
+            {
+                throw new IllegalArgumentException("Invalid number: " + tokens[i + 1]);
+            }
+            if (numbers[i] < 0)
+            {
+                throw new IllegalArgumentException("Negative number: " + numbers[i]);
+            }
+            stones += numbers[i];
+        }
+        if (stones > Zobrist.MAX_STONES)
+        {
+            throw new IllegalArgumentException("More than " + Zobrist.MAX_STONES + " stones");
+        }
+
+        int[] slots = new int[GameState.SLOTS_PER_SIDE];
+        int[] opponentSlots = new int[GameState.SLOTS_PER_SIDE];
+        System.arraycopy(numbers, 0, slots, 0, GameState.SLOTS_PER_SIDE);
+        System.arraycopy(numbers, sides, opponentSlots, 0, GameState.SLOTS_PER_SIDE);
+        return new GameState(slots, opponentSlots, numbers[GameState.SLOTS_PER_SIDE], numbers[2 * sides - 1],
+                activePlayer);
+    }
+
+    /**
+     * Formats a position in the format read by {@link #parsePosition}
+     */
+    public static String formatPosition(GameState state)
+    {
+        StringBuilder position = new StringBuilder(state.getActivePlayer() == PlayerRepresentation.LEFT ? "L" : "R");
+        for (int stones : state.getSlots())
+        {
+            position.append(' ').append(stones);
+        }
+        position.append(' ').append(state.getScore());
+        for (int stones : state.getOpponentSlots())
+        {
+            position.append(' ').append(stones);
+        }
+        position.append(' ').append(state.getOpponentScore());
+        return position.toString();
+    }
+}
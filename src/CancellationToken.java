@@ -0,0 +1,42 @@
+/**
+ * A flag through which searches are cancelled from other threads. Every evaluator of a search checks the token of
+ * its {@link SearchContext} periodically and stops with a {@link SearchCancelledException} once it is cancelled.
+ *
+ * A token may have a parent, in which case it is also cancelled whenever its parent is, so that a single token can
+ * stop all searches of a game or a session while each search can still be cancelled on its own.
+ */
+public class CancellationToken
+{
+    private final CancellationToken parent;
+    private volatile boolean cancelled;
+
+    /**
+     * Creates a token that is only cancelled by {@link #cancel}
+     */
+    public CancellationToken()
+    {
+        this(null);
+    }
+
+    /**
+     * Creates a token that is also cancelled whenever the specified parent is
+     * @param parent the parent token, or null if there is none
+     */
+    public CancellationToken(CancellationToken parent)
+    {
+        this.parent = parent;
+    }
+
+    /**
+     * Cancels all searches using this token or a token descending from it, now and in the future
+     */
+    public void cancel()
+    {
+        cancelled = true;
+    }
+
+    public boolean isCancelled()
+    {
+        return cancelled || (parent != null && parent.isCancelled());
+    }
+}
@@ -0,0 +1,172 @@
+/**
+ * The difficulty level of a computer player, given either as the number of levels in the state space of possible
+ * moves that the computer searches through or as the time the computer may take to determine each move.
+ *
+ * A difficulty level can instead select a {@link MonteCarloAI}, given as the number of playouts it runs per move or
+ * as the time it may take to determine each move.
+ */
+public class Difficulty
+{
+    private static final String MONTE_CARLO_PREFIX = "mcts:";
+
+    private final int depth;
+    private final long timeBudgetMillis;
+    private final boolean monteCarlo;
+
+    private Difficulty(int depth, long timeBudgetMillis, boolean monteCarlo)
+    {
+        this.depth = depth;
+        this.timeBudgetMillis = timeBudgetMillis;
+        this.monteCarlo = monteCarlo;
+    }
+
+    /**
+     * Creates a difficulty level at which the computer searches through the specified number of levels of moves
+     */
+    public static Difficulty ofDepth(int depth)
+    {
+        if (depth <= 0)
+        {
+            throw new IllegalArgumentException("Depth must be a positive integer: " + depth);
+        }
+        return new Difficulty(depth, 0, false);
+    }
+
+    /**
+     * Creates a difficulty level at which the computer may take the specified time to determine each move
+     */
+    public static Difficulty ofTimeBudget(long timeBudgetMillis)
+    {
+        if (timeBudgetMillis <= 0)
+        {
+            throw new IllegalArgumentException("Time budget must be positive: " + timeBudgetMillis);
+        }
+        return new Difficulty(0, timeBudgetMillis, false);
+    }
+
+    /**
+     * Creates a difficulty level at which a Monte Carlo computer runs the specified number of playouts per move
+     */
+    public static Difficulty ofPlayouts(int playouts)
+    {
+        if (playouts <= 0)
+        {
+            throw new IllegalArgumentException("Playouts must be a positive integer: " + playouts);
+        }
+        return new Difficulty(playouts, 0, true);
+    }
+
+    /**
+     * Creates a difficulty level at which a Monte Carlo computer may take the specified time to determine each move
+     */
+    public static Difficulty ofMonteCarloTimeBudget(long timeBudgetMillis)
+    {
+        return new Difficulty(0, ofTimeBudget(timeBudgetMillis).timeBudgetMillis, true);
+    }
+
+    /**
+     * Parses a difficulty level, which is either a positive integer depth such as "8" or a time budget in seconds or
+     * milliseconds such as "2s" or "500ms". Either may be prefixed by "mcts:" to select a Monte Carlo computer, in
+     * which case the integer is the number of playouts per move, such as "mcts:20000" or "mcts:2s".
+     * @throws IllegalArgumentException if the value is not a valid difficulty level
+     */
+    public static Difficulty parse(String value)
+    {
+        String s = value.trim().toLowerCase();
+        if (s.startsWith(MONTE_CARLO_PREFIX))
+        {
+            Difficulty difficulty = parse(s.substring(MONTE_CARLO_PREFIX.length()));
+            if (difficulty.monteCarlo)
+            {
+                throw new IllegalArgumentException("Invalid difficulty level: " + value);
+            }
+            return new Difficulty(difficulty.depth, difficulty.timeBudgetMillis, true);
+        }
+        try
+        {
+            if (s.endsWith("ms"))
+            {
+                return ofTimeBudget(Long.parseLong(s.substring(0, s.length() - 2).trim()));
+            }
+            if (s.endsWith("s"))
+            {
+                return ofTimeBudget(Math.round(Double.parseDouble(s.substring(0, s.length() - 1).trim()) * 1000));
+            }
+            return ofDepth(Integer.parseInt(s));
+        }
+        catch (NumberFormatException e)
+        {
+            throw new IllegalArgumentException("Invalid difficulty level: " + value, e);
+        }
+    }
+
+    /**
+     * Creates a computer player of this difficulty level that runs its searches in the default engine
+     */
+    public Player createAI()
+    {
+        return createAI(SearchEngine.getDefault());
+    }
+
+    /**
+     * Creates a computer player of this difficulty level that runs its searches in the specified engine
+     */
+    public Player createAI(SearchEngine engine)
+    {
+        if (monteCarlo)
+        {
+            return new MonteCarloAI(depth, timeBudgetMillis, MonteCarloAI.DEFAULT_NODE_CAPACITY, engine);
+        }
+        if (timeBudgetMillis > 0)
+        {
+            return AI.withTimeBudget(timeBudgetMillis, TranspositionTable.DEFAULT_SIZE_MB, engine);
+        }
+        return new AI(depth, TranspositionTable.DEFAULT_SIZE_MB, engine);
+    }
+
+    /**
+     * Creates a depth-limited or time-budgeted computer player of this difficulty level that shares the specified
+     * transposition table with other players
+     * @throws IllegalStateException if this difficulty level selects a Monte Carlo computer
+     */
+    public AI createAI(SearchEngine engine, TranspositionTable transpositionTable)
+    {
+        if (monteCarlo)
+        {
+            throw new IllegalStateException("Monte Carlo computers do not use a transposition table");
+        }
+        if (timeBudgetMillis > 0)
+        {
+            return AI.withTimeBudget(timeBudgetMillis, transpositionTable, engine);
+        }
+        return new AI(depth, transpositionTable, engine);
+    }
+
+    /**
+     * Gets the search depth, or the number of playouts of a Monte Carlo computer, or 0 if the computer has a time
+     * budget
+     */
+    public int getDepth()
+    {
+        return depth;
+    }
+
+    /**
+     * Gets the time the computer may take to determine each move in milliseconds, or 0 if it has none
+     */
+    public long getTimeBudgetMillis()
+    {
+        return timeBudgetMillis;
+    }
+
+    public boolean isMonteCarlo()
+    {
+        return monteCarlo;
+    }
+
+    public String toString()
+    {
+        String level = timeBudgetMillis > 0 ? timeBudgetMillis + "ms" : Integer.toString(depth);
+        return monteCarlo ? MONTE_CARLO_PREFIX + level : level;
+    }
+}
@@ -0,0 +1,620 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A search whose root, and optionally the level below it, is split between {@link SearchWorker} processes, so that
+ * a search can use more cores and memory than a single JVM.
+ *
+ * The coordinator expands the top {@code splitDepth} levels of the search tree itself and hands the subtrees below
+ * them to the workers as tasks. Each worker connection runs a task at a time, and a connection whose task is done
+ * takes the next task in move order, so that idle workers take over the work that busy ones have not started yet.
+ * The split levels are searched as in the young brothers wait concept of {@link MoveEvaluator}: the siblings of a
+ * node's first child are only handed out once the first child is done, and every task is searched with the window
+ * the results known at that moment allow. A node whose window closes cancels the tasks still running below it.
+ *
+ * When a worker dies or its connection fails, its running task is handed to the next idle worker, and the search
+ * only fails once all workers are lost. Workers that are lost are connected to again when the next search starts.
+ */
+public class DistributedSearch implements AutoCloseable
+{
+    public static final int DEFAULT_SPLIT_DEPTH = 1;
+    public static final int MAX_SPLIT_DEPTH = 2;
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 5000;
+
+    private final List<InetSocketAddress> addresses;
+    private final WorkerLink[] links;
+    private final int splitDepth;
+
+    // The state of the current search, guarded by this
+    private Node root;
+    private int nextTask;
+    private long nodeCount;
+    private long taskCount;
+    private long failedTaskCount;
+    private int liveLinkCount;
+    private boolean closed;
+
+    // The cancellations of tasks decided while holding the monitor, which are sent to the workers after releasing it
+    private final List<Runnable> cancellations = new ArrayList<>();
+
+    /**
+     * Creates a search and connects to its workers
+     * @param addresses the addresses of the workers
+     * @param splitDepth the number of levels of the search tree split between the workers, 1 or 2
+     * @throws IOException if none of the workers can be connected to
+     */
+    public DistributedSearch(List<InetSocketAddress> addresses, int splitDepth) throws IOException
+    {
+        if (addresses.isEmpty() || splitDepth < 1 || splitDepth > MAX_SPLIT_DEPTH)
+        {
+            throw new IllegalArgumentException("Invalid workers or split depth");
+        }
+        this.addresses = new ArrayList<>(addresses);
+        this.links = new WorkerLink[addresses.size()];
+        this.splitDepth = splitDepth;
+        if (connect(true) == 0)
+        {
+            throw new IOException("No search worker can be connected to");
+        }
+    }
+
+    /**
+     * Searches a position with the workers listening on the specified ports of the loopback interface.
+     * Usage: {@code DistributedSearch <depth> "<position>" <worker port> [<worker port> ...] [--split <levels>]},
+     * with the position in the format of {@link BatchAnalyzer}
+     */
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length < 3)
+        {
+            System.err.println("Usage: DistributedSearch <depth> \"<position>\" <worker port> [<worker port> ...] "
+                    + "[--split <levels>]");
+            System.exit(1);
+        }
+        int depth = Integer.parseInt(args[0]);
+        GameState state = BatchAnalyzer.parsePosition(args[1]);
+        int splitDepth = DEFAULT_SPLIT_DEPTH;
+        List<InetSocketAddress> addresses = new ArrayList<>();
+        for (int i = 2; i < args.length; i++)
+        {
+            if (args[i].equals("--split"))
+            {
+                splitDepth = Integer.parseInt(args[++i]);
+            }
+            else
+            {
+                addresses.add(new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(args[i])));
+            }
+        }
+
+        try (DistributedSearch search = new DistributedSearch(addresses, splitDepth))
+        {
+            long start = System.nanoTime();
+            int move = search.search(state, depth);
+            long elapsed = System.nanoTime() - start;
+            System.out.printf("move %d, fitness %.2f, %,d states in %,d tasks (%,d failed), %.1f ms, %d/%d workers%n",
+                    move, (double) search.getFitness() / EvaluationWeights.STONE, search.getNodeCount(),
+                    search.getTaskCount(), search.getFailedTaskCount(), elapsed / 1e6, search.getLiveWorkerCount(),
+                    addresses.size());
+        }
+    }
+
+    /**
+     * Finds the best move in the specified state
+     * @param state the current state of the game, which must not be complete
+     * @param depth the number of levels of moves to evaluate, at least 1
+     * @return the best move
+     * @throws UncheckedIOException if all workers are lost before the search is complete
+     */
+    public int search(GameState state, int depth)
+    {
+        if (depth < 1 || state.gameIsComplete())
+        {
+            throw new IllegalArgumentException("Nothing to search");
+        }
+        connect(false);
+        synchronized (this)
+        {
+            if (closed)
+            {
+                throw new IllegalStateException("Search closed");
+            }
+            nodeCount = 0;
+            taskCount = 0;
+            failedTaskCount = 0;
+            root = new Node(null, state, -1, false, depth, 0);
+            expand(root, 0);
+            completeFinalStates(root);
+            notifyAll();
+        }
+        sendCancellations();
+        synchronized (this)
+        {
+            while (!root.complete)
+            {
+                if (liveLinkCount == 0)
+                {
+                    throw new UncheckedIOException(new IOException("All search workers were lost"));
+                }
+                try
+                {
+                    wait();
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                    throw new SearchCancelledException();
+                }
+            }
+            return root.bestMove;
+        }
+    }
+
+    // Connects to the workers that are not connected and returns the number of live connections
+    private int connect(boolean reportFailures)
+    {
+        for (int i = 0; i < links.length; i++)
+        {
+            synchronized (this)
+            {
+                if (closed || (links[i] != null && links[i].live))
+                {
+                    continue;
+                }
+            }
+            try
+            {
+                WorkerLink link = new WorkerLink(addresses.get(i));
+                synchronized (this)
+                {
+                    links[i] = link;
+                    liveLinkCount++;
+                }
+                link.thread.start();
+            }
+            catch (IOException e)
+            {
+                if (reportFailures)
+                {
+                    System.err.println("Failed to connect to search worker " + addresses.get(i) + ": "
+                            + e.getMessage());
+                }
+            }
+        }
+        synchronized (this)
+        {
+            return liveLinkCount;
+        }
+    }
+
+    // Creates the children of the nodes of the split levels down to the tasks. No node is completed before the whole
+    // tree is built, since completing a node may close windows and walk the siblings of its ancestors.
+    private void expand(Node node, int ply)
+    {
+        SearchBoard board = new SearchBoard(node.state);
+        if (ply == splitDepth || node.depth == 0 || board.isGameComplete())
+        {
+            node.task = true;
+            return;
+        }
+
+        List<Integer> moves = orderMoves(board);
+        node.children = new Node[moves.size()];
+        for (int i = 0; i < moves.size(); i++)
+        {
+            int move = moves.get(i);
+            GameState childState = GamePlayer.performMove(node.state, move);
+            boolean samePlayer = childState.getActivePlayer() == node.state.getActivePlayer();
+            // Extra moves are extended the same way as in MoveEvaluator
+            boolean extended = samePlayer && !childState.gameIsComplete()
+                    && node.extensions < MoveEvaluator.MAX_EXTENSIONS;
+            node.children[i] = new Node(node, childState, move, samePlayer,
+                    extended ? node.depth : node.depth - 1, extended ? node.extensions + 1 : node.extensions);
+        }
+        for (Node child : node.children)
+        {
+            expand(child, ply + 1);
+        }
+    }
+
+    // Completes the tasks whose game is complete, whose fitness is known without a worker
+    private void completeFinalStates(Node node)
+    {
+        if (node.complete)
+        {
+            return;
+        }
+        if (node.task)
+        {
+            if (node.state.gameIsComplete())
+            {
+                SearchBoard board = new SearchBoard(node.state);
+                complete(node, EvaluationWeights.STONE * (board.getScore() - board.getOpponentScore()));
+            }
+            return;
+        }
+        for (Node child : node.children)
+        {
+            completeFinalStates(child);
+        }
+    }
+
+    // Orders the moves of a split node: extra moves, then captures, then the other moves from the last to the first
+    private static List<Integer> orderMoves(SearchBoard board)
+    {
+        List<Integer> moves = new ArrayList<>();
+        for (int pass = 0; pass < 3; pass++)
+        {
+            for (int slot = GameState.SLOTS_PER_SIDE; slot >= 1; slot--)
+            {
+                if (!board.isValidMove(slot))
+                {
+                    continue;
+                }
+                int rank = board.isExtraMove(slot) ? 0 : board.isCapture(slot) ? 1 : 2;
+                if (rank == pass)
+                {
+                    moves.add(slot);
+                }
+            }
+        }
+        return moves;
+    }
+
+    // Finds the first task in move order that may be started: neither it nor an ancestor is complete, no link runs
+    // it, and the first child of each of its ancestors is complete unless it descends from that child
+    private Node findTask(Node node)
+    {
+        if (node.complete)
+        {
+            return null;
+        }
+        if (node.task)
+        {
+            return node.link == null ? node : null;
+        }
+        for (Node child : node.children)
+        {
+            Node task = findTask(child);
+            if (task != null || !node.children[0].complete)
+            {
+                return task;
+            }
+        }
+        return null;
+    }
+
+    // Gets the search window of a node from the perspective of its active player, narrowed by the results known
+    private static int[] getWindow(Node node)
+    {
+        int alpha = MoveEvaluator.MIN_FITNESS;
+        int beta = MoveEvaluator.MAX_FITNESS;
+        if (node.parent != null)
+        {
+            int[] parentWindow = getWindow(node.parent);
+            alpha = node.samePlayer ? parentWindow[0] : -parentWindow[1];
+            beta = node.samePlayer ? parentWindow[1] : -parentWindow[0];
+        }
+        return new int[] {Math.max(alpha, node.bestFitness), beta};
+    }
+
+    // Records the fitness of a node, from the perspective of its active player, and completes its parent once all
+    // of its children are complete or its window has closed
+    private void complete(Node node, int fitness)
+    {
+        node.complete = true;
+        node.fitness = fitness;
+        Node parent = node.parent;
+        if (parent == null)
+        {
+            notifyAll();
+            return;
+        }
+        if (parent.complete)
+        {
+            return;
+        }
+        int moveFitness = node.samePlayer ? fitness : -fitness;
+        if (moveFitness > parent.bestFitness)
+        {
+            parent.bestFitness = moveFitness;
+            parent.bestMove = node.move;
+        }
+        parent.completedChildren++;
+        int[] window = getWindow(parent);
+        if (parent.completedChildren == parent.children.length || window[0] >= window[1])
+        {
+            cancelTasks(parent);
+            complete(parent, parent.bestFitness);
+        }
+        else
+        {
+            // The siblings of the first child may be waiting for it, and the window of running tasks has narrowed
+            notifyAll();
+        }
+    }
+
+    // Cancels the running tasks below a node, once the monitor is released
+    private void cancelTasks(Node node)
+    {
+        if (node.task)
+        {
+            if (node.link != null && !node.complete)
+            {
+                WorkerLink link = node.link;
+                int id = node.id;
+                cancellations.add(() -> link.cancel(id));
+            }
+            return;
+        }
+        for (Node child : node.children)
+        {
+            cancelTasks(child);
+        }
+    }
+
+    // Sends the cancellations decided since the last call, outside of the monitor so that a slow worker connection
+    // cannot hold up the other links
+    private void sendCancellations()
+    {
+        List<Runnable> pending;
+        synchronized (this)
+        {
+            if (cancellations.isEmpty())
+            {
+                return;
+            }
+            pending = new ArrayList<>(cancellations);
+            cancellations.clear();
+        }
+        pending.forEach(Runnable::run);
+    }
+
+    /**
+     * Gets the fitness of the chosen move from the perspective of the active player
+     */
+    public synchronized int getFitness()
+    {
+        return root.bestFitness;
+    }
+
+    /**
+     * Gets the number of states visited by the workers during the last search
+     */
+    public synchronized long getNodeCount()
+    {
+        return nodeCount;
+    }
+
+    /**
+     * Gets the number of tasks handed to workers during the last search, including the ones that failed
+     */
+    public synchronized long getTaskCount()
+    {
+        return taskCount;
+    }
+
+    /**
+     * Gets the number of tasks of the last search that failed because their worker was lost
+     */
+    public synchronized long getFailedTaskCount()
+    {
+        return failedTaskCount;
+    }
+
+    /**
+     * Gets the number of workers currently connected
+     */
+    public synchronized int getLiveWorkerCount()
+    {
+        return liveLinkCount;
+    }
+
+    /**
+     * Closes the connections to all workers, which cancels their running tasks
+     */
+    public void close()
+    {
+        synchronized (this)
+        {
+            closed = true;
+            notifyAll();
+        }
+        for (WorkerLink link : links)
+        {
+            if (link != null)
+            {
+                link.close();
+            }
+        }
+    }
+
+    // A node of the split levels of the search tree, or a task handed to a worker
+    private static class Node
+    {
+        private final Node parent;
+        private final GameState state;
+        private final int move;
+        // Whether the active player of the node is the active player of its parent
+        private final boolean samePlayer;
+        private final int depth;
+        private final int extensions;
+
+        private Node[] children;
+        private int completedChildren;
+        private int bestFitness = MoveEvaluator.MIN_FITNESS;
+        private int bestMove = -1;
+        private int fitness;
+        private boolean complete;
+
+        // Whether the node is searched by a worker, the link running it and the number it was handed out with
+        private boolean task;
+        private WorkerLink link;
+        private int id;
+
+        private Node(Node parent, GameState state, int move, boolean samePlayer, int depth, int extensions)
+        {
+            this.parent = parent;
+            this.state = state;
+            this.move = move;
+            this.samePlayer = samePlayer;
+            this.depth = depth;
+            this.extensions = extensions;
+        }
+    }
+
+    // The connection to a worker, whose thread hands it a task at a time
+    private class WorkerLink
+    {
+        private final Socket socket;
+        private final DataInputStream in;
+        private final DataOutputStream out;
+        private final Thread thread;
+        private volatile boolean live = true;
+
+        private WorkerLink(InetSocketAddress address) throws IOException
+        {
+            socket = new Socket();
+            try
+            {
+                socket.connect(address, CONNECT_TIMEOUT_MILLIS);
+                socket.setTcpNoDelay(true);
+                in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                out.writeInt(SearchWorker.MAGIC);
+                out.writeInt(SearchWorker.VERSION);
+                out.flush();
+                if (in.readInt() != SearchWorker.MAGIC || in.readInt() != SearchWorker.VERSION)
+                {
+                    throw new IOException("Not a search worker of version " + SearchWorker.VERSION);
+                }
+            }
+            catch (IOException e)
+            {
+                socket.close();
+                throw e;
+            }
+            thread = new Thread(this::run, "mancala-search-link-" + address.getPort());
+            thread.setDaemon(true);
+        }
+
+        private void run()
+        {
+            Node task = null;
+            try
+            {
+                while (true)
+                {
+                    int[] window;
+                    synchronized (DistributedSearch.this)
+                    {
+                        while (!closed && (root == null || (task = findTask(root)) == null))
+                        {
+                            DistributedSearch.this.wait();
+                        }
+                        if (closed)
+                        {
+                            return;
+                        }
+                        task.link = this;
+                        task.id = nextTask++;
+                        taskCount++;
+                        window = getWindow(task);
+                    }
+
+                    synchronized (out)
+                    {
+                        out.writeByte(SearchWorker.SEARCH);
+                        out.writeInt(task.id);
+                        SearchWorker.writeState(out, task.state);
+                        out.writeByte(task.depth);
+                        out.writeByte(task.extensions);
+                        out.writeInt(window[0]);
+                        out.writeInt(window[1]);
+                        out.flush();
+                    }
+
+                    int id = in.readInt();
+                    int status = in.readUnsignedByte();
+                    int fitness = in.readInt();
+                    long nodes = in.readLong();
+                    if (id != task.id)
+                    {
+                        throw new IOException("Unexpected result for task " + id);
+                    }
+                    synchronized (DistributedSearch.this)
+                    {
+                        nodeCount += nodes;
+                        task.link = null;
+                        if (status == SearchWorker.COMPLETED && !task.complete)
+                        {
+                            complete(task, fitness);
+                        }
+                        task = null;
+                    }
+                    sendCancellations();
+                }
+            }
+            catch (IOException | InterruptedException | RuntimeException e)
+            {
+                synchronized (DistributedSearch.this)
+                {
+                    if (!closed)
+                    {
+                        System.err.println("Lost search worker " + socket.getRemoteSocketAddress() + ": " + e);
+                    }
+                    if (task != null)
+                    {
+                        // The task is handed to the next idle worker
+                        task.link = null;
+                        failedTaskCount++;
+                    }
+                    live = false;
+                    liveLinkCount--;
+                    DistributedSearch.this.notifyAll();
+                }
+                close();
+            }
+        }
+
+        // Asks the worker to stop a running task, leaving it to the link's thread to notice if the connection fails
+        private void cancel(int id)
+        {
+            try
+            {
+                synchronized (out)
+                {
+                    out.writeByte(SearchWorker.CANCEL);
+                    out.writeInt(id);
+                    out.flush();
+                }
+            }
+            catch (IOException e)
+            {
+                // The link's thread finds out as well
+            }
+        }
+
+        private void close()
+        {
+            try
+            {
+                socket.close();
+            }
+            catch (IOException e)
+            {
+                // Closing anyway
+            }
+        }
+    }
+}
@@ -0,0 +1,195 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A database of the exact values of all states with at most a certain number of stones left in the slots, as
+ * generated by {@link EndgameDatabaseGenerator}.
+ *
+ * The value of a state is the difference between the number of stones its active player and their opponent will
+ * add to their stores until the end of the game, assuming both play perfectly. It only depends on the contents of the
+ * slots, so each state is identified by the twelve slot counts seen from the active player's side, which are ranked
+ * with the combinatorial number system: all states with fewer stones come first, followed by the states with the same
+ * number of stones in colexicographic order of their compositions.
+ *
+ * The database file is memory-mapped, so opening it is instant and lookups do not use any heap.
+ *
+ * File format: the magic number {@link #MAGIC}, the maximum number of stones (int), the number of entries (long),
+ * followed by one signed byte per entry.
+ */
+public class EndgameDatabase
+{
+    public static final int MAGIC = 0x4D454442;
+    public static final int HEADER_SIZE = Integer.BYTES * 2 + Long.BYTES;
+
+    /**
+     * The system property holding the path of the database used by computer players by default
+     */
+    public static final String DEFAULT_PATH_PROPERTY = "mancala.endgameDatabase";
+
+    static final int SLOTS = GameState.SLOTS_PER_SIDE * 2;
+
+    // BINOMIALS[n][k] is n choose k
+    private static final long[][] BINOMIALS = new long[Zobrist.MAX_STONES + SLOTS + 1][SLOTS + 1];
+
+    static
+    {
+        for (int n = 0; n < BINOMIALS.length; n++)
+        {
+            BINOMIALS[n][0] = 1;
+            for (int k = 1; k <= Math.min(n, SLOTS); k++)
+            {
+                BINOMIALS[n][k] = BINOMIALS[n - 1][k - 1] + BINOMIALS[n - 1][k];
+            }
+        }
+    }
+
+    private static EndgameDatabase defaultDatabase;
+    private static boolean defaultDatabaseLoaded;
+
+    private final MappedByteBuffer entries;
+    private final int maxStones;
+
+    private EndgameDatabase(MappedByteBuffer entries, int maxStones)
+    {
+        this.entries = entries;
+        this.maxStones = maxStones;
+    }
+
+    /**
+     * Opens the database stored in the specified file
+     * @throws IOException if the file cannot be read or is not an endgame database
+     */
+    public static EndgameDatabase open(Path path) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+        {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC)
+            {
+                throw new IOException("Not an endgame database: " + path);
+            }
+            int maxStones = buffer.getInt(Integer.BYTES);
+            long entryCount = buffer.getLong(Integer.BYTES * 2);
+            if (entryCount != getEntryCount(maxStones) || buffer.limit() != HEADER_SIZE + entryCount)
+            {
+                throw new IOException("Corrupt endgame database: " + path);
+            }
+            return new EndgameDatabase(buffer, maxStones);
+        }
+    }
+
+    /**
+     * Gets the database named by the {@value #DEFAULT_PATH_PROPERTY} system property, or null if the property is not
+     * set
+     * @throws UncheckedIOException if the database cannot be opened
+     */
+    public static synchronized EndgameDatabase getDefault()
+    {
+        if (!defaultDatabaseLoaded)
+        {
+            String path = System.getProperty(DEFAULT_PATH_PROPERTY);
+            if (path != null)
+            {
+                try
+                {
+                    defaultDatabase = open(Paths.get(path));
+                }
+                catch (IOException e)
+                {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            defaultDatabaseLoaded = true;
+        }
+        return defaultDatabase;
+    }
+
+    /**
+     * Gets the largest number of stones left in the slots of the states in the database
+     */
+    public int getMaxStones()
+    {
+        return maxStones;
+    }
+
+    /**
+     * Returns true if the database contains the value of the current state of the specified board
+     */
+    public boolean contains(SearchBoard board)
+    {
+        return board.getStonesOnBoard() <= maxStones;
+    }
+
+    /**
+     * Gets the value of the current state of the specified board, which must be contained in the database: the
+     * difference between the number of stones its active player and their opponent will add to their stores until
+     * the end of the game.
+     */
+    public int probe(SearchBoard board)
+    {
+        return entries.get(HEADER_SIZE + (int) getIndex(board));
+    }
+
+    /**
+     * Gets the number of states with at most the specified number of stones left in the slots
+     */
+    public static long getEntryCount(int maxStones)
+    {
+        return getFirstIndex(maxStones + 1);
+    }
+
+    // All states with fewer stones are ranked before the states with the specified number of stones
+    static long getFirstIndex(int stones)
+    {
+        return BINOMIALS[stones + SLOTS - 1][SLOTS];
+    }
+
+    /**
+     * Gets the index of the current state of the specified board
+     */
+    public static long getIndex(SearchBoard board)
+    {
+        long rank = 0;
+        int partialSum = 0;
+        for (int i = 0; i < SLOTS - 1; i++)
+        {
+            partialSum += i < GameState.SLOTS_PER_SIDE
+                    ? board.getStones(i + 1)
+                    : board.getOpponentStones(i - GameState.SLOTS_PER_SIDE + 1);
+            rank += BINOMIALS[partialSum + i][i + 1];
+        }
+        return getFirstIndex(board.getStonesOnBoard()) + rank;
+    }
+
+    /**
+     * Gets the index of the state whose slots contain the specified numbers of stones, the active player's slots
+     * 1 to 6 followed by the opponent's slots 1 to 6
+     */
+    static long getIndex(int[] slots)
+    {
+        long rank = 0;
+        int partialSum = 0;
+        for (int i = 0; i < SLOTS - 1; i++)
+        {
+            partialSum += slots[i];
+            rank += BINOMIALS[partialSum + i][i + 1];
+        }
+        return getFirstIndex(partialSum + slots[SLOTS - 1]) + rank;
+    }
+
+    /**
+     * Writes the header of a database file into the specified buffer
+     */
+    static void writeHeader(ByteBuffer buffer, int maxStones)
+    {
+        buffer.putInt(MAGIC);
+        buffer.putInt(maxStones);
+        buffer.putLong(getEntryCount(maxStones));
+    }
+}
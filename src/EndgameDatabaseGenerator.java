@@ -0,0 +1,184 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Generates an {@link EndgameDatabase} by retrograde analysis.
+ *
+ * Stones only ever leave the slots, so the states are solved in order of the number of stones left in them: every
+ * move either adds a stone to a store, and so leads to a state that has already been solved, or keeps all stones in
+ * the slots while moving them further along the board. Within the same number of stones the latter can only happen
+ * finitely often, so those states are solved recursively from the states they lead to.
+ *
+ * Usage: {@code java EndgameDatabaseGenerator <max stones> <output file>}
+ */
+public class EndgameDatabaseGenerator
+{
+    private static final byte UNSOLVED = Byte.MIN_VALUE;
+
+    private final int maxStones;
+    private final byte[] values;
+
+    /**
+     * Creates a generator
+     * @param maxStones the largest number of stones left in the slots of the states to solve
+     */
+    public EndgameDatabaseGenerator(int maxStones)
+    {
+        long entryCount = EndgameDatabase.getEntryCount(maxStones);
+        if (entryCount > Integer.MAX_VALUE - EndgameDatabase.HEADER_SIZE)
+        {
+            throw new IllegalArgumentException("Too many stones for a single database file: " + maxStones);
+        }
+        this.maxStones = maxStones;
+        this.values = new byte[(int) entryCount];
+        Arrays.fill(values, UNSOLVED);
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length != 2)
+        {
+            System.out.println("Usage: java EndgameDatabaseGenerator <max stones> <output file>");
+            return;
+        }
+        int maxStones = Integer.parseInt(args[0]);
+        Path path = Paths.get(args[1]);
+
+        long start = System.nanoTime();
+        EndgameDatabaseGenerator generator = new EndgameDatabaseGenerator(maxStones);
+        generator.generate();
+        generator.write(path);
+        System.out.printf("Solved %d states with up to %d stones in %.1f s%n",
+                generator.values.length, maxStones, (System.nanoTime() - start) / 1e9);
+    }
+
+    /**
+     * Solves all states with up to the maximum number of stones
+     */
+    public void generate()
+    {
+        int[] slots = new int[EndgameDatabase.SLOTS];
+        for (int stones = 0; stones <= maxStones; stones++)
+        {
+            solveAll(slots, 0, stones);
+        }
+    }
+
+    // Solves every distribution of the specified number of stones over the slots from the given index onwards
+    private void solveAll(int[] slots, int index, int stones)
+    {
+        if (index == slots.length - 1)
+        {
+            slots[index] = stones;
+            solve(slots);
+            return;
+        }
+        for (int i = stones; i >= 0; i--)
+        {
+            slots[index] = i;
+            solveAll(slots, index + 1, stones - i);
+        }
+        slots[index] = 0;
+    }
+
+    // Gets the value of the state with the specified slots, solving it first if necessary
+    private int solve(int[] slots)
+    {
+        int index = (int) EndgameDatabase.getIndex(slots);
+        if (values[index] != UNSOLVED)
+        {
+            return values[index];
+        }
+
+        SearchBoard board = createBoard(slots);
+        int value;
+        if (board.isGameComplete())
+        {
+            // Each player captures all stones remaining in their slots
+            value = board.getScore() - board.getOpponentScore() + sumOfSlots(slots, 0) - sumOfSlots(slots, 1);
+        }
+        else
+        {
+            value = Integer.MIN_VALUE;
+            int[] moves = new int[GameState.SLOTS_PER_SIDE];
+            int[] childSlots = new int[EndgameDatabase.SLOTS];
+            int moveCount = board.generateMoves(moves);
+            for (int i = 0; i < moveCount; i++)
+            {
+                board.makeMove(moves[i]);
+                int moveValue;
+                if (board.getActivePlayer() == PlayerRepresentation.LEFT)
+                {
+                    // The score of the player to move next already includes any stones captured at the end of
+                    // the game, after which the slots are empty and the value of the remaining state is 0
+                    moveValue = board.getScore() - board.getOpponentScore() + solve(getSlots(board, childSlots));
+                }
+                else
+                {
+                    moveValue = board.getOpponentScore() - board.getScore() - solve(getSlots(board, childSlots));
+                }
+                board.unmakeMove();
+                value = Math.max(value, moveValue);
+            }
+        }
+        values[index] = (byte) value;
+        return value;
+    }
+
+    // Creates a board with empty stores on which the left player is to move
+    private static SearchBoard createBoard(int[] slots)
+    {
+        int[] activeSlots = Arrays.copyOfRange(slots, 0, GameState.SLOTS_PER_SIDE);
+        int[] opponentSlots = Arrays.copyOfRange(slots, GameState.SLOTS_PER_SIDE, EndgameDatabase.SLOTS);
+        return new SearchBoard(new GameState(activeSlots, opponentSlots, 0, 0, PlayerRepresentation.LEFT));
+    }
+
+    // Writes the slots of the board, seen from the side of its active player, into the specified array
+    private static int[] getSlots(SearchBoard board, int[] slots)
+    {
+        for (int slot = 1; slot <= GameState.SLOTS_PER_SIDE; slot++)
+        {
+            slots[slot - 1] = board.getStones(slot);
+            slots[slot - 1 + GameState.SLOTS_PER_SIDE] = board.getOpponentStones(slot);
+        }
+        return slots;
+    }
+
+    private static int sumOfSlots(int[] slots, int side)
+    {
+        int sum = 0;
+        for (int i = side * GameState.SLOTS_PER_SIDE; i < (side + 1) * GameState.SLOTS_PER_SIDE; i++)
+        {
+            sum += slots[i];
+        }
+        return sum;
+    }
+
+    /**
+     * Writes the solved states to the specified file
+     */
+    public void write(Path path) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING))
+        {
+            ByteBuffer header = ByteBuffer.allocate(EndgameDatabase.HEADER_SIZE);
+            EndgameDatabase.writeHeader(header, maxStones);
+            header.flip();
+            while (header.hasRemaining())
+            {
+                channel.write(header);
+            }
+            ByteBuffer entries = ByteBuffer.wrap(values);
+            while (entries.hasRemaining())
+            {
+                channel.write(entries);
+            }
+        }
+    }
+}
@@ -0,0 +1,480 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Tunes the evaluation weights on the positions of recorded games by logistic regression (Texel's tuning method).
+ *
+ * Every position of a complete game is labelled with the final result for its active player: 1 for a win, 0.5 for a
+ * tie and 0 for a loss. The error of a set of weights is the mean squared difference between the labels and the
+ * results predicted from the evaluations of the positions, {@code 1 / (1 + exp(-scale * fitness))}. Positions are
+ * not evaluated where they stand but at the end of the principal variation of the same quiescence search the full
+ * search runs at its horizon, so that the weights are fitted to the quiet states they are applied to. Since the
+ * evaluation is linear in the weights, the tuner resolves all positions once per round, storing the features of the
+ * quiet states, and then minimizes the error by gradient descent without searching again. The quiet states depend on
+ * the weights, so the positions are resolved again with the rounded weights of the previous round.
+ *
+ * Positions are stored compactly in chunks, which are resolved and evaluated in parallel.
+ */
+public class EvaluationTuner
+{
+    public static final int DEFAULT_ROUNDS = 3;
+    public static final int DEFAULT_ITERATIONS = 400;
+
+    /**
+     * The number of plies at the start of every game whose positions are left out by default, since they are shared
+     * by most games and mostly come from the opening book
+     */
+    public static final int DEFAULT_SKIPPED_PLIES = 4;
+
+    private static final int CHUNK_SIZE = 1 << 15;
+
+    // A position is stored as the active player's slots and store, the opponent's slots and store and the active
+    // player
+    private static final int POSITION_SIZE = 2 * (GameState.SLOTS_PER_SIDE + 1) + 1;
+
+    // The quiet state of a position is stored as the difference between the scores followed by the features
+    private static final int VALUES = 1 + EvaluationWeights.FEATURES;
+
+    // The step size and decay rates of the Adam optimizer, in units of the weights
+    private static final double LEARNING_RATE = 0.05;
+    private static final double FIRST_MOMENT_DECAY = 0.9;
+    private static final double SECOND_MOMENT_DECAY = 0.999;
+    private static final double EPSILON = 1e-8;
+
+    // The range searched for the scale of the sigmoid, per unit of fitness
+    private static final double MIN_SCALE = 1e-4;
+    private static final double MAX_SCALE = 1;
+    private static final int SCALE_SEARCH_STEPS = 60;
+
+    private final ExecutorService executor;
+    private final int skippedPlies;
+    private final EndgameDatabase endgameDatabase;
+    private final List<Chunk> chunks = new ArrayList<>();
+    private int positionCount;
+    private double scale;
+
+    /**
+     * Creates a tuner without any positions
+     * @param executor the executor resolving and evaluating chunks of positions in parallel
+     * @param skippedPlies the number of plies at the start of every game whose positions are left out
+     * @param endgameDatabase the database settling the quiescence search in states with few stones left, or null
+     */
+    public EvaluationTuner(ExecutorService executor, int skippedPlies, EndgameDatabase endgameDatabase)
+    {
+        this.executor = executor;
+        this.skippedPlies = skippedPlies;
+        this.endgameDatabase = endgameDatabase;
+    }
+
+    /**
+     * Tunes the weights on the games of the specified record files and writes them to a weights file. Usage:
+     * {@code EvaluationTuner <output file> <record file> [<record file> ...] [--threads <threads>]
+     * [--rounds <rounds>] [--iterations <iterations per round>] [--skip <plies>]}
+     */
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length < 2)
+        {
+            System.err.println("Usage: EvaluationTuner <output file> <record file> [<record file> ...] "
+                    + "[--threads <threads>] [--rounds <rounds>] [--iterations <iterations per round>] "
+                    + "[--skip <plies>]");
+            System.exit(1);
+        }
+        Path output = Paths.get(args[0]);
+        List<Path> inputs = new ArrayList<>();
+        int threads = Runtime.getRuntime().availableProcessors();
+        int rounds = DEFAULT_ROUNDS;
+        int iterations = DEFAULT_ITERATIONS;
+        int skippedPlies = DEFAULT_SKIPPED_PLIES;
+        for (int i = 1; i < args.length; i++)
+        {
+            switch (args[i])
+            {
+                case "--threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "--rounds":
+                    rounds = Integer.parseInt(args[++i]);
+                    break;
+                case "--iterations":
+                    iterations = Integer.parseInt(args[++i]);
+                    break;
+                case "--skip":
+                    skippedPlies = Integer.parseInt(args[++i]);
+                    break;
+                default:
+                    inputs.add(Paths.get(args[i]));
+            }
+        }
+
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable ->
+        {
+            Thread thread = new Thread(runnable, "mancala-tuning-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try
+        {
+            EvaluationTuner tuner = new EvaluationTuner(executor, skippedPlies, EndgameDatabase.getDefault());
+            long start = System.nanoTime();
+            for (Path input : inputs)
+            {
+                tuner.addGames(input);
+            }
+            System.out.printf("read %,d positions in %.1f s%n", tuner.getPositionCount(),
+                    (System.nanoTime() - start) / 1e9);
+            if (tuner.getPositionCount() == 0)
+            {
+                System.err.println("No positions of complete games to tune on");
+                System.exit(1);
+            }
+
+            EvaluationWeights weights = EvaluationWeights.getDefault();
+            for (int round = 1; round <= rounds; round++)
+            {
+                start = System.nanoTime();
+                tuner.resolve(weights);
+                long elapsed = System.nanoTime() - start;
+                if (round == 1)
+                {
+                    tuner.fitScale(weights);
+                    System.out.printf("scale %.6f per sixteenth of a stone%n", tuner.getScale());
+                }
+                double initialError = tuner.computeError(toArray(weights));
+                double[] tuned = tuner.fit(toArray(weights), iterations);
+                EvaluationWeights rounded = new EvaluationWeights((int) Math.round(tuned[0]),
+                        (int) Math.round(tuned[1]), (int) Math.round(tuned[2]), (int) Math.round(tuned[3]));
+                System.out.printf("round %d: resolved in %.1f s (%,.0f positions/min), error %.6f -> %.6f, %s%n",
+                        round, elapsed / 1e9, tuner.getPositionCount() * 60e9 / Math.max(elapsed, 1),
+                        initialError, tuner.computeError(toArray(rounded)), rounded);
+                weights = rounded;
+            }
+            weights.save(output);
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Reads the complete games of a record file and adds their positions
+     * @throws IOException if the file cannot be read or a record is corrupt
+     * @throws IllegalStateException if a record holds an invalid move
+     */
+    public void addGames(Path path) throws IOException
+    {
+        try (GameRecordReader reader = GameRecordReader.open(path))
+        {
+            while (reader.hasNext())
+            {
+                GameRecord record = reader.next();
+                if (reader.isComplete())
+                {
+                    addGame(record, reader.getLeftScore(), reader.getRightScore());
+                }
+            }
+        }
+    }
+
+    // Replays a game and adds every position after the skipped plies, labelled with the final scores
+    private void addGame(GameRecord record, int leftScore, int rightScore)
+    {
+        SearchBoard board = new SearchBoard(GameState.getInitialState(), EvaluationWeights.SCORE_ONLY);
+        for (int i = 0; i < record.getMoveCount(); i++)
+        {
+            if (i >= skippedPlies)
+            {
+                int score = board.getActivePlayer() == PlayerRepresentation.LEFT ? leftScore : rightScore;
+                int opponentScore = board.getActivePlayer() == PlayerRepresentation.LEFT ? rightScore : leftScore;
+                addPosition(board, Integer.signum(score - opponentScore) + 1);
+            }
+            if (!board.isValidMove(record.getMove(i)))
+            {
+                throw new IllegalStateException("Invalid move " + record.getMove(i) + " at index " + i);
+            }
+            board.makeMove(record.getMove(i));
+        }
+    }
+
+    // Adds the current position of a board with the result for its active player in halves of a win
+    private void addPosition(SearchBoard board, int halfWins)
+    {
+        if (chunks.isEmpty() || chunks.get(chunks.size() - 1).size == CHUNK_SIZE)
+        {
+            chunks.add(new Chunk());
+        }
+        Chunk chunk = chunks.get(chunks.size() - 1);
+        int offset = chunk.size * POSITION_SIZE;
+        for (int slot = 1; slot <= GameState.SLOTS_PER_SIDE; slot++)
+        {
+            chunk.positions[offset + slot - 1] = (byte) board.getStones(slot);
+            chunk.positions[offset + GameState.SLOTS_PER_SIDE + slot] = (byte) board.getOpponentStones(slot);
+        }
+        chunk.positions[offset + GameState.SLOTS_PER_SIDE] = (byte) board.getScore();
+        chunk.positions[offset + 2 * GameState.SLOTS_PER_SIDE + 1] = (byte) board.getOpponentScore();
+        chunk.positions[offset + POSITION_SIZE - 1] = (byte) board.getActivePlayer().ordinal();
+        chunk.halfWins[chunk.size] = (byte) halfWins;
+        chunk.size++;
+        positionCount++;
+    }
+
+    /**
+     * Finds the quiet state of every position with the specified weights, in parallel
+     */
+    public void resolve(EvaluationWeights weights)
+    {
+        forEachChunk(chunk ->
+        {
+            new Resolver(weights).resolve(chunk);
+            return new double[0];
+        });
+    }
+
+    /**
+     * Sets the scale of the sigmoid to the one minimizing the error of the specified weights, by a golden-section
+     * search over its logarithm
+     * @return the error with the new scale
+     */
+    public double fitScale(EvaluationWeights weights)
+    {
+        double[] values = toArray(weights);
+        double ratio = (Math.sqrt(5) - 1) / 2;
+        double low = Math.log(MIN_SCALE);
+        double high = Math.log(MAX_SCALE);
+        for (int step = 0; step < SCALE_SEARCH_STEPS; step++)
+        {
+            double lower = high - ratio * (high - low);
+            double upper = low + ratio * (high - low);
+            scale = Math.exp(lower);
+            double lowerError = computeError(values);
+            scale = Math.exp(upper);
+            if (lowerError < computeError(values))
+            {
+                high = upper;
+            }
+            else
+            {
+                low = lower;
+            }
+        }
+        scale = Math.exp((low + high) / 2);
+        return computeError(values);
+    }
+
+    /**
+     * Computes the mean squared error of the predicted results over all positions, in parallel
+     * @param weights the weights of the features, in the order of {@link EvaluationWeights#computeFeatures}
+     */
+    public double computeError(double[] weights)
+    {
+        double[] sum = forEachChunk(chunk ->
+        {
+            double error = 0;
+            for (int i = 0; i < chunk.size; i++)
+            {
+                double difference = chunk.halfWins[i] / 2.0 - predict(chunk, i, weights);
+                error += difference * difference;
+            }
+            return new double[] {error};
+        });
+        return sum[0] / positionCount;
+    }
+
+    /**
+     * Minimizes the error by gradient descent with the Adam optimizer, computing the gradient over all positions in
+     * parallel in every iteration
+     * @param weights the weights to start from, in the order of {@link EvaluationWeights#computeFeatures}
+     * @param iterations the number of steps taken
+     * @return the fitted weights
+     */
+    public double[] fit(double[] weights, int iterations)
+    {
+        double[] fitted = weights.clone();
+        double[] firstMoments = new double[EvaluationWeights.FEATURES];
+        double[] secondMoments = new double[EvaluationWeights.FEATURES];
+        for (int iteration = 1; iteration <= iterations; iteration++)
+        {
+            double[] current = fitted.clone();
+            double[] gradient = forEachChunk(chunk -> computeGradient(chunk, current));
+            for (int feature = 0; feature < EvaluationWeights.FEATURES; feature++)
+            {
+                double derivative = gradient[feature] / positionCount;
+                firstMoments[feature] = FIRST_MOMENT_DECAY * firstMoments[feature]
+                        + (1 - FIRST_MOMENT_DECAY) * derivative;
+                secondMoments[feature] = SECOND_MOMENT_DECAY * secondMoments[feature]
+                        + (1 - SECOND_MOMENT_DECAY) * derivative * derivative;
+                double firstMoment = firstMoments[feature] / (1 - Math.pow(FIRST_MOMENT_DECAY, iteration));
+                double secondMoment = secondMoments[feature] / (1 - Math.pow(SECOND_MOMENT_DECAY, iteration));
+                fitted[feature] -= LEARNING_RATE * firstMoment / (Math.sqrt(secondMoment) + EPSILON);
+            }
+        }
+        return fitted;
+    }
+
+    // Sums the derivatives of the squared errors of the positions of a chunk with respect to each weight
+    private double[] computeGradient(Chunk chunk, double[] weights)
+    {
+        double[] gradient = new double[EvaluationWeights.FEATURES];
+        for (int i = 0; i < chunk.size; i++)
+        {
+            double prediction = predict(chunk, i, weights);
+            double factor = -2 * (chunk.halfWins[i] / 2.0 - prediction) * prediction * (1 - prediction) * scale;
+            int offset = i * VALUES + 1;
+            for (int feature = 0; feature < EvaluationWeights.FEATURES; feature++)
+            {
+                gradient[feature] += factor * chunk.values[offset + feature];
+            }
+        }
+        return gradient;
+    }
+
+    // Predicts the result of the position with the specified index in a chunk from the evaluation of its quiet state
+    private double predict(Chunk chunk, int index, double[] weights)
+    {
+        int offset = index * VALUES;
+        double fitness = EvaluationWeights.STONE * chunk.values[offset];
+        for (int feature = 0; feature < EvaluationWeights.FEATURES; feature++)
+        {
+            fitness += weights[feature] * chunk.values[offset + 1 + feature];
+        }
+        return 1 / (1 + Math.exp(-scale * fitness));
+    }
+
+    // Applies a function to every chunk in parallel and returns the element-wise sum of the results
+    private double[] forEachChunk(Function<Chunk, double[]> function)
+    {
+        List<CompletableFuture<double[]>> results = new ArrayList<>();
+        for (Chunk chunk : chunks)
+        {
+            results.add(CompletableFuture.supplyAsync(() -> function.apply(chunk), executor));
+        }
+        double[] sum = new double[EvaluationWeights.FEATURES];
+        for (CompletableFuture<double[]> result : results)
+        {
+            double[] values = result.join();
+            for (int i = 0; i < values.length; i++)
+            {
+                sum[i] += values[i];
+            }
+        }
+        return sum;
+    }
+
+    private static double[] toArray(EvaluationWeights weights)
+    {
+        double[] values = new double[EvaluationWeights.FEATURES];
+        for (int feature = 0; feature < EvaluationWeights.FEATURES; feature++)
+        {
+            values[feature] = weights.getWeight(feature);
+        }
+        return values;
+    }
+
+    /**
+     * Gets the number of positions added
+     */
+    public int getPositionCount()
+    {
+        return positionCount;
+    }
+
+    /**
+     * Gets the scale of the sigmoid mapping fitness to predicted results, per unit of fitness
+     */
+    public double getScale()
+    {
+        return scale;
+    }
+
+    // Up to CHUNK_SIZE positions with their results and the values of their quiet states
+    private static class Chunk
+    {
+        private final byte[] positions = new byte[CHUNK_SIZE * POSITION_SIZE];
+        private final byte[] halfWins = new byte[CHUNK_SIZE];
+        private final int[] values = new int[CHUNK_SIZE * VALUES];
+        private int size;
+    }
+
+    // Runs the quiescence search of MoveEvaluator on positions and keeps track of the state at the end of the
+    // principal variation
+    private class Resolver implements MoveEvaluator.LeafRecorder
+    {
+        private final SearchContext context;
+        private final int[] slots = new int[GameState.SLOTS_PER_SIDE];
+        private final int[] opponentSlots = new int[GameState.SLOTS_PER_SIDE];
+
+        // The values of the quiet state of the best line found at every level of the quiescence search, from the
+        // perspective of the player active at that level
+        private final int[][] leaves = new int[MoveEvaluator.MAX_QUIESCENCE_DEPTH + 2][VALUES];
+        private final int[] features = new int[EvaluationWeights.FEATURES];
+
+        private Resolver(EvaluationWeights weights)
+        {
+            this.context = new SearchContext(null).withEvaluationWeights(weights).withEndgameDatabase(endgameDatabase);
+        }
+
+        private void resolve(Chunk chunk)
+        {
+            for (int i = 0; i < chunk.size; i++)
+            {
+                int offset = i * POSITION_SIZE;
+                for (int slot = 0; slot < GameState.SLOTS_PER_SIDE; slot++)
+                {
+                    slots[slot] = chunk.positions[offset + slot];
+                    opponentSlots[slot] = chunk.positions[offset + GameState.SLOTS_PER_SIDE + 1 + slot];
+                }
+                PlayerRepresentation activePlayer =
+                        PlayerRepresentation.values()[chunk.positions[offset + POSITION_SIZE - 1]];
+                GameState state = new GameState(slots, opponentSlots,
+                        chunk.positions[offset + GameState.SLOTS_PER_SIDE],
+                        chunk.positions[offset + 2 * GameState.SLOTS_PER_SIDE + 1], activePlayer);
+                MoveEvaluator moveEvaluator = new MoveEvaluator(state, 0, context);
+                moveEvaluator.setLeafRecorder(this);
+                moveEvaluator.invoke();
+                System.arraycopy(leaves[0], 0, chunk.values, i * VALUES, VALUES);
+            }
+        }
+
+        public void recordEvaluation(SearchBoard board, int level)
+        {
+            int[] leaf = leaves[level];
+            leaf[0] = board.getScore() - board.getOpponentScore();
+            EvaluationWeights.computeFeatures(board, features);
+            System.arraycopy(features, 0, leaf, 1, EvaluationWeights.FEATURES);
+        }
+
+        public void recordOutcome(int level, int scoreDifference)
+        {
+            int[] leaf = leaves[level];
+            leaf[0] = scoreDifference;
+            for (int feature = 1; feature < VALUES; feature++)
+            {
+                leaf[feature] = 0;
+            }
+        }
+
+        public void recordTurnPassed(int level)
+        {
+            int[] leaf = leaves[level];
+            for (int i = 0; i < VALUES; i++)
+            {
+                leaf[i] = -leaf[i];
+            }
+        }
+
+        public void recordBestMove(int level)
+        {
+            System.arraycopy(leaves[level + 1], 0, leaves[level], 0, VALUES);
+        }
+    }
+}
@@ -0,0 +1,276 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Properties;
+
+/**
+ * The weights of the features a {@link SearchBoard} evaluates a state by when the search cannot look any further.
+ *
+ * Fitness is measured in fractions of a stone: a stone in a store is worth {@link #STONE}, which makes the fitness of
+ * a completed game exactly {@code STONE} times the difference between the scores. Before the game is complete, the
+ * positional features of both sides are added to that difference, each multiplied by its weight:
+ * <ul>
+ *     <li>the stones in the slots of the side, which will mostly end up in its own store</li>
+ *     <li>the mobility of the side, the number of its slots that are not empty</li>
+ *     <li>the extra-turn opportunities of the side, the number of its slots whose last stone would land in its
+ *     store</li>
+ *     <li>the capture threats of the side, the number of stones in the opponent's slots facing its own empty
+ *     slots</li>
+ * </ul>
+ * All features only depend on a single slot or on a slot and the slot opposite to it, so the board can update them
+ * as each stone is sown instead of recomputing them at every leaf of the search.
+ *
+ * Weights tuned by {@link EvaluationTuner} are stored as a properties file with one entry per weight, which computer
+ * players load at start-up when the {@value #DEFAULT_PATH_PROPERTY} system property names it.
+ */
+public class EvaluationWeights
+{
+    /**
+     * The fitness of a single stone in a store
+     */
+    public static final int STONE = 16;
+
+    /**
+     * The number of positional features
+     */
+    public static final int FEATURES = 4;
+
+    /**
+     * The system property holding the path of the weights used by computer players by default
+     */
+    public static final String DEFAULT_PATH_PROPERTY = "mancala.evaluationWeights";
+
+    // The names of the weights in a weights file, in the order of the features
+    private static final String[] NAMES = {"slotStone", "mobility", "extraTurn", "captureThreat"};
+
+    // The weights used when the system property does not name a file
+    private static final EvaluationWeights BUILT_IN_WEIGHTS = new EvaluationWeights(4, 2, 6, 3);
+
+    private static EvaluationWeights defaultWeights;
+
+    /**
+     * Weights that only take the scores into account
+     */
+    public static final EvaluationWeights SCORE_ONLY = new EvaluationWeights(0, 0, 0, 0);
+
+    private final int slotStone;
+    private final int mobility;
+    private final int extraTurn;
+    private final int captureThreat;
+
+    // The number of entries per pit in the table of pit values
+    static final int STONES_PER_PIT = Zobrist.MAX_STONES + 1;
+
+    // The value of the features depending only on a single slot, indexed by its pit (see Zobrist#pitKey) times
+    // STONES_PER_PIT plus its number of stones. Values are positive on the left side and negative on the right side,
+    // so that the board can keep a single balance of both sides.
+    private final int[] signedPitValues = new int[Zobrist.PITS * STONES_PER_PIT];
+
+    // The weight of capture threats by pit, positive on the left side and negative on the right side
+    private final int[] signedCaptureThreats = new int[Zobrist.PITS];
+
+    /**
+     * Creates a set of weights, each being the fitness of a single unit of its feature
+     * @param slotStone the weight of a stone in a slot of the side
+     * @param mobility the weight of a slot of the side that is not empty
+     * @param extraTurn the weight of a slot of the side whose move would give it an extra turn
+     * @param captureThreat the weight of an opponent's stone facing an empty slot of the side
+     */
+    public EvaluationWeights(int slotStone, int mobility, int extraTurn, int captureThreat)
+    {
+        this.slotStone = slotStone;
+        this.mobility = mobility;
+        this.extraTurn = extraTurn;
+        this.captureThreat = captureThreat;
+
+        int leftStore = GameState.SLOTS_PER_SIDE;
+        int rightStore = Zobrist.PITS - 1;
+        for (int slot = 1; slot <= GameState.SLOTS_PER_SIDE; slot++)
+        {
+            for (int stones = 0; stones < STONES_PER_PIT; stones++)
+            {
+                int value = getPitValue(slot, stones);
+                signedPitValues[(leftStore - slot) * STONES_PER_PIT + stones] = value;
+                signedPitValues[(rightStore - slot) * STONES_PER_PIT + stones] = -value;
+            }
+            signedCaptureThreats[leftStore - slot] = captureThreat;
+            signedCaptureThreats[rightStore - slot] = -captureThreat;
+        }
+    }
+
+    /**
+     * Gets the weights used by computer players by default: the weights stored in the file named by the
+     * {@value #DEFAULT_PATH_PROPERTY} system property if it is set, and the built-in weights otherwise
+     * @throws UncheckedIOException if the file cannot be loaded
+     */
+    public static synchronized EvaluationWeights getDefault()
+    {
+        if (defaultWeights == null)
+        {
+            String path = System.getProperty(DEFAULT_PATH_PROPERTY);
+            if (path == null)
+            {
+                defaultWeights = BUILT_IN_WEIGHTS;
+            }
+            else
+            {
+                try
+                {
+                    defaultWeights = load(Paths.get(path));
+                }
+                catch (IOException e)
+                {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+        return defaultWeights;
+    }
+
+    /**
+     * Loads weights from a properties file holding an integer entry for every weight
+     * @throws IOException if the file cannot be read or lacks a weight
+     */
+    public static EvaluationWeights load(Path path) throws IOException
+    {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.ISO_8859_1))
+        {
+            properties.load(reader);
+        }
+        int[] weights = new int[FEATURES];
+        for (int feature = 0; feature < FEATURES; feature++)
+        {
+            String value = properties.getProperty(NAMES[feature]);
+            if (value == null)
+            {
+                throw new IOException("Missing weight " + NAMES[feature] + ": " + path);
+            }
+            try
+            {
+                weights[feature] = Integer.parseInt(value.trim());
+            }
+            catch (NumberFormatException e)
+            {
+                throw new IOException("Invalid weight " + NAMES[feature] + ": " + path, e);
+            }
+        }
+        return new EvaluationWeights(weights[0], weights[1], weights[2], weights[3]);
+    }
+
+    /**
+     * Stores these weights in a properties file that can be read by {@link #load}
+     */
+    public void save(Path path) throws IOException
+    {
+        try (Writer writer = Files.newBufferedWriter(path, StandardCharsets.ISO_8859_1))
+        {
+            writer.write("# Evaluation weights in sixteenths of a stone per unit of each feature\n");
+            for (int feature = 0; feature < FEATURES; feature++)
+            {
+                writer.write(NAMES[feature] + "=" + getWeight(feature) + "\n");
+            }
+        }
+    }
+
+    /**
+     * Computes the positional features of the current state of a board, in the order of the parameters of the
+     * constructor, each as its value for the active player minus its value for their opponent. The evaluation of the
+     * board is {@link #STONE} times the difference between the scores plus the features multiplied by their weights.
+     */
+    public static void computeFeatures(SearchBoard board, int[] features)
+    {
+        Arrays.fill(features, 0, FEATURES, 0);
+        int cycleLength = 2 * GameState.SLOTS_PER_SIDE + 1;
+        for (int slot = 1; slot <= GameState.SLOTS_PER_SIDE; slot++)
+        {
+            int stones = board.getStones(slot);
+            int opponentStones = board.getOpponentStones(slot);
+            int oppositeSlot = GameState.SLOTS_PER_SIDE + 1 - slot;
+            features[0] += stones - opponentStones;
+            features[1] += (stones > 0 ? 1 : 0) - (opponentStones > 0 ? 1 : 0);
+            features[2] += (stones > 0 && stones % cycleLength == slot ? 1 : 0)
+                    - (opponentStones > 0 && opponentStones % cycleLength == slot ? 1 : 0);
+            features[3] += (stones == 0 ? board.getOpponentStones(oppositeSlot) : 0)
+                    - (opponentStones == 0 ? board.getStones(oppositeSlot) : 0);
+        }
+    }
+
+    /**
+     * Gets the value of the features that depend only on the specified slot of a side holding the specified number
+     * of stones: the stones themselves, the mobility and the extra-turn opportunity
+     */
+    public int getPitValue(int slot, int stones)
+    {
+        if (stones == 0)
+        {
+            return 0;
+        }
+        int cycleLength = 2 * GameState.SLOTS_PER_SIDE + 1;
+        return slotStone * stones + mobility + (stones % cycleLength == slot ? extraTurn : 0);
+    }
+
+    // Gets the table of pit values laid out for a search board
+    int[] getSignedPitValues()
+    {
+        return signedPitValues;
+    }
+
+    // Gets the capture threat weights laid out for a search board
+    int[] getSignedCaptureThreats()
+    {
+        return signedCaptureThreats;
+    }
+
+    public int getSlotStone()
+    {
+        return slotStone;
+    }
+
+    public int getMobility()
+    {
+        return mobility;
+    }
+
+    public int getExtraTurn()
+    {
+        return extraTurn;
+    }
+
+    public int getCaptureThreat()
+    {
+        return captureThreat;
+    }
+
+    /**
+     * Gets the weight of the specified feature, numbered in the order of the parameters of the constructor
+     */
+    public int getWeight(int feature)
+    {
+        switch (feature)
+        {
+            case 0:
+                return slotStone;
+            case 1:
+                return mobility;
+            case 2:
+                return extraTurn;
+            case 3:
+                return captureThreat;
+            default:
+                throw new IndexOutOfBoundsException("Feature " + feature);
+        }
+    }
+
+    public String toString()
+    {
+        return String.format("slotStone=%d mobility=%d extraTurn=%d captureThreat=%d",
+                slotStone, mobility, extraTurn, captureThreat);
+    }
+}
@@ -1,10 +1,20 @@
+import java.io.IOException;
+import java.nio.file.Paths;
+
 /**
  * A class representing a Mancala game.
  */
 public class Game
 {
+    /**
+     * The system property holding the path of the file every completed game is appended to, see
+     * {@link GameRecordWriter}
+     */
+    public static final String RECORD_PATH_PROPERTY = "mancala.gameRecords";
+
     private GameState state;
     private Board board;
+    private GameRecord record;
 
     private Player leftPlayer;
     private Player rightPlayer;
@@ -23,7 +33,17 @@ public class Game
      */
     public static Game createSinglePlayerGame(int depth)
     {
-        return new Game(new Human(), new AI(depth));
+        return createSinglePlayerGame(Difficulty.ofDepth(depth));
+    }
+
+    /**
+     * Creates a game between a human player and a computer player
+     * @param difficulty the difficulty level of the computer
+     * @return the resulting game object
+     */
+    public static Game createSinglePlayerGame(Difficulty difficulty)
+    {
+        return new Game(new Human(), difficulty.createAI());
     }
 
     /**
@@ -43,7 +63,29 @@ public class Game
      */
     public static Game createAIGame(int depth)
     {
-        return new Game(new AI(depth), new AI(depth));
+        return createAIGame(Difficulty.ofDepth(depth));
+    }
+
+    /**
+     * Creates a game between two computer players
+     * @param difficulty the difficulty level of both computers
+     * @return the resulting game object
+     */
+    public static Game createAIGame(Difficulty difficulty)
+    {
+        return new Game(difficulty.createAI(), difficulty.createAI());
+    }
+
+    /**
+     * Creates a game between two computer players of different difficulty levels, such as a depth-limited computer
+     * against a Monte Carlo computer
+     * @param leftDifficulty the difficulty level of the computer moving first
+     * @param rightDifficulty the difficulty level of the computer moving second
+     * @return the resulting game object
+     */
+    public static Game createAIGame(Difficulty leftDifficulty, Difficulty rightDifficulty)
+    {
+        return new Game(leftDifficulty.createAI(), rightDifficulty.createAI());
     }
 
     /**
@@ -53,24 +95,79 @@ public class Game
     {
         this.state = GameState.getInitialState();
         this.board = state.getBoard();
+        this.record = new GameRecord();
 
         while (!state.gameIsComplete())
         {
             displayBoard();
             System.out.println(state.getActivePlayer() + " player's turn");
 
-            GameClient.promptUserForNextMove(getActivePlayer());
-            int move = getActivePlayer().chooseNextMove(state);
+            Player player = getActivePlayer();
+            GameClient.promptUserForNextMove(player);
+            long moveStart = System.nanoTime();
+            int move = player.chooseNextMove(state);
             if (move == -1)
             {
+                stopPondering();
                 return;
             }
+            if (!(player instanceof Human))
+            {
+                System.out.println("Computer performed move: " + move);
+            }
+            record.addMove(move, player, System.nanoTime() - moveStart);
             state = GamePlayer.performMove(state, move);
+            SearchMetrics.getDefault().recordPlayedMove();
             board = state.getBoard();
+
+            // The computer searches on the human's time rather than waiting idly for their move
+            if (player instanceof AI && !state.gameIsComplete() && getActivePlayer() instanceof Human)
+            {
+                ((AI) player).ponder(state);
+            }
         }
+        stopPondering();
+        saveRecord();
         displayResult();
     }
 
+    /**
+     * Gets the moves made so far in the current game
+     */
+    public GameRecord getRecord()
+    {
+        return record;
+    }
+
+    // Appends the record of the completed game to the file named by the system property, if it is set
+    private void saveRecord()
+    {
+        String path = System.getProperty(RECORD_PATH_PROPERTY);
+        if (path == null)
+        {
+            return;
+        }
+        try (GameRecordWriter writer = GameRecordWriter.open(Paths.get(path)))
+        {
+            writer.write(record);
+        }
+        catch (IOException e)
+        {
+            System.out.println("Could not save the game: " + e.getMessage());
+        }
+    }
+
+    private void stopPondering()
+    {
+        for (Player player : new Player[] {leftPlayer, rightPlayer})
+        {
+            if (player instanceof AI)
+            {
+                ((AI) player).stopPondering();
+            }
+        }
+    }
+
     private Player getActivePlayer()
     {
         return state.getActivePlayer() == PlayerRepresentation.LEFT ? leftPlayer : rightPlayer;
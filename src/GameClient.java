@@ -46,25 +46,24 @@ public class GameClient
         }
     }
 
-    // Prompts the user for the difficulty level of the computer(s) and reads the incoming value, handling any errors
-    private int readDifficultyLevel(Scanner sc)
+    // Prompts the user for the difficulty level of the computer(s) and reads the incoming value, handling any errors.
+    // The difficulty level is either a search depth or a time budget per move such as "2s" or "500ms", optionally
+    // prefixed by "mcts:" to play against a Monte Carlo computer.
+    private Difficulty readDifficultyLevel(Scanner sc)
     {
         while (true)
         {
-            System.out.println("Please enter the difficulty level of the computer:");
-            int level;
+            System.out.println("Please enter the difficulty level of the computer (a depth, or a time such as 2s; "
+                    + "prefix with mcts: for a Monte Carlo computer, such as mcts:20000 or mcts:2s):");
+            Difficulty level;
             try
             {
-                level = Integer.parseInt(sc.nextLine());
-                if (level <= 0)
-                {
-                    System.out.println("Invalid value. Must be a positive integer.");
-                    continue;
-                }
+                level = Difficulty.parse(sc.nextLine());
             }
             catch(Exception e)
             {
-                System.out.println("Invalid value. Must be a positive integer.");
+                System.out.println("Invalid value. Must be a positive integer or a time such as 2s or 500ms, "
+                        + "optionally prefixed with mcts:.");
                 continue;
             }
             return level;
@@ -88,7 +87,7 @@ public class GameClient
 
     public static void promptUserForNextMove(Player activePlayer)
     {
-        if (interactive && activePlayer instanceof AI)
+        if (interactive && !(activePlayer instanceof Human))
         {
             GameClient.pause();
         }
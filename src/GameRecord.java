@@ -0,0 +1,195 @@
+import java.util.Arrays;
+
+/**
+ * The moves of a game played from the initial state, optionally with the fitness the player expected from each move
+ * and the time it took to choose it, as stored by {@link GameRecordWriter} and read by {@link GameRecordReader}.
+ * Fitness is measured in the units of {@link EvaluationWeights}, sixteenths of a stone.
+ *
+ * Since the rules are deterministic the moves are all that is needed to reproduce every state of the game, which
+ * {@link #replay} does with {@link GamePlayer#performMove}.
+ */
+public class GameRecord
+{
+    /**
+     * The fitness of a move chosen without a search, such as a human's move or a book move
+     */
+    public static final int NO_FITNESS = Short.MIN_VALUE;
+
+    /**
+     * The largest number of moves in a record
+     */
+    public static final int MAX_MOVES = 0xFFFF;
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private byte[] moves;
+    private short[] fitnesses;
+    private int[] thinkMicros;
+    private int moveCount;
+
+    /**
+     * Creates an empty record of a game starting from the initial state
+     */
+    public GameRecord()
+    {
+        moves = new byte[INITIAL_CAPACITY];
+    }
+
+    // Creates a record holding the specified arrays, which have already been validated
+    GameRecord(byte[] moves, short[] fitnesses, int[] thinkMicros)
+    {
+        this.moves = moves;
+        this.fitnesses = fitnesses;
+        this.thinkMicros = thinkMicros;
+        this.moveCount = moves.length;
+    }
+
+    /**
+     * Appends a move chosen without a search
+     */
+    public void addMove(int move)
+    {
+        append(move);
+        if (fitnesses != null)
+        {
+            fitnesses[moveCount] = NO_FITNESS;
+        }
+        moveCount++;
+    }
+
+    /**
+     * Appends a move along with the fitness the player expected from it and the time it took to choose it. The
+     * fitness is clamped to the range of a short, and the time is kept with microsecond precision.
+     */
+    public void addMove(int move, int fitness, long thinkNanos)
+    {
+        append(move);
+        if (fitnesses == null)
+        {
+            fitnesses = new short[moves.length];
+            thinkMicros = new int[moves.length];
+            Arrays.fill(fitnesses, 0, moveCount, (short) NO_FITNESS);
+        }
+        fitnesses[moveCount] = (short) Math.max(Short.MIN_VALUE + 1, Math.min(Short.MAX_VALUE, fitness));
+        thinkMicros[moveCount] = (int) Math.min(Integer.MAX_VALUE, thinkNanos / 1000);
+        moveCount++;
+    }
+
+    /**
+     * Appends a move chosen by a player, along with its fitness and the time it took to choose it if the player is a
+     * computer that searched for it
+     */
+    public void addMove(int move, Player player, long thinkNanos)
+    {
+        SearchStats stats = player instanceof AI ? ((AI) player).getLastSearchStats() : null;
+        if (stats != null && stats.getDepth() > 0)
+        {
+            addMove(move, stats.getFitness(), thinkNanos);
+        }
+        else
+        {
+            addMove(move);
+        }
+    }
+
+    // Stores a move at the end of the record, growing the arrays if needed
+    private void append(int move)
+    {
+        if (move < 1 || move > GameState.SLOTS_PER_SIDE)
+        {
+            throw new IllegalArgumentException("Invalid move: " + move);
+        }
+        if (moveCount == MAX_MOVES)
+        {
+            throw new IllegalStateException("Too many moves in a game record");
+        }
+        if (moveCount == moves.length)
+        {
+            int capacity = Math.min(Math.max(moves.length * 2, INITIAL_CAPACITY), MAX_MOVES);
+            moves = Arrays.copyOf(moves, capacity);
+            if (fitnesses != null)
+            {
+                fitnesses = Arrays.copyOf(fitnesses, capacity);
+                thinkMicros = Arrays.copyOf(thinkMicros, capacity);
+            }
+        }
+        moves[moveCount] = (byte) move;
+    }
+
+    public int getMoveCount()
+    {
+        return moveCount;
+    }
+
+    /**
+     * Gets the slot chosen by the active player in the specified move
+     */
+    public int getMove(int index)
+    {
+        checkIndex(index);
+        return moves[index];
+    }
+
+    /**
+     * Returns true if the fitness and thinking time of at least one move are recorded
+     */
+    public boolean hasEvaluations()
+    {
+        return fitnesses != null;
+    }
+
+    /**
+     * Gets the fitness the player expected from the specified move, or {@link #NO_FITNESS} if it is not recorded
+     */
+    public int getFitness(int index)
+    {
+        checkIndex(index);
+        return fitnesses == null ? NO_FITNESS : fitnesses[index];
+    }
+
+    /**
+     * Gets the time the player took to choose the specified move in microseconds, or 0 if it is not recorded
+     */
+    public int getThinkMicros(int index)
+    {
+        checkIndex(index);
+        return thinkMicros == null ? 0 : thinkMicros[index];
+    }
+
+    private void checkIndex(int index)
+    {
+        if (index < 0 || index >= moveCount)
+        {
+            throw new IndexOutOfBoundsException("Move " + index + " of " + moveCount);
+        }
+    }
+
+    /**
+     * Performs all moves of the record from the initial state
+     * @return the state after the last move
+     * @throws IllegalStateException if a move is not valid in the state it is made in
+     */
+    public GameState replay()
+    {
+        GameState state = GameState.getInitialState();
+        for (int i = 0; i < moveCount; i++)
+        {
+            if (!GamePlayer.isValidMove(state, moves[i]))
+            {
+                throw new IllegalStateException("Invalid move " + moves[i] + " at index " + i);
+            }
+            state = GamePlayer.performMove(state, moves[i]);
+        }
+        return state;
+    }
+
+    public String toString()
+    {
+        StringBuilder record = new StringBuilder();
+        for (int i = 0; i < moveCount; i++)
+        {
+            record.append(i == 0 ? "" : " ").append(moves[i]);
+        }
+        return record.toString();
+    }
+}
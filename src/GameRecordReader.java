@@ -0,0 +1,250 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads the records of a file written by {@link GameRecordWriter} in order.
+ *
+ * The file is memory-mapped rather than read through a buffer, in windows of at most {@value #MAX_WINDOW_SIZE} bytes
+ * so that files larger than a single mapping can be read as well. Each record starts in the window it is read from,
+ * which is moved forward to the start of the next record when that record does not fit in the rest of the window.
+ */
+public class GameRecordReader implements Closeable
+{
+    public static final int MAX_WINDOW_SIZE = 1 << 30;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final long size;
+    private MappedByteBuffer window;
+    private long windowStart;
+
+    private int leftScore;
+    private int rightScore;
+    private boolean complete;
+
+    private GameRecordReader(Path path, FileChannel channel) throws IOException
+    {
+        this.path = path;
+        this.channel = channel;
+        this.size = channel.size();
+        map(0);
+    }
+
+    /**
+     * Opens a game record file
+     * @throws IOException if the file cannot be read or is not a game record file
+     */
+    public static GameRecordReader open(Path path) throws IOException
+    {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try
+        {
+            GameRecordReader reader = new GameRecordReader(path, channel);
+            if (reader.size < GameRecordWriter.HEADER_SIZE || reader.window.getInt() != GameRecordWriter.MAGIC)
+            {
+                throw new IOException("Not a game record file: " + path);
+            }
+            int version = reader.window.getInt();
+            if (version != GameRecordWriter.VERSION)
+            {
+                throw new IOException("Unsupported game record version " + version + ": " + path);
+            }
+            return reader;
+        }
+        catch (IOException | RuntimeException e)
+        {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Replays every record of the specified files and reports the outcomes of the games and the replay throughput.
+     * The exit status is 1 if the final scores of a replayed game differ from the scores stored in its record.
+     * Usage: {@code GameRecordReader <file> [<file> ...]}
+     */
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length == 0)
+        {
+            System.err.println("Usage: GameRecordReader <file> [<file> ...]");
+            System.exit(1);
+        }
+        long games = 0;
+        long completeGames = 0;
+        long moves = 0;
+        long leftWins = 0;
+        long rightWins = 0;
+        long draws = 0;
+        long evaluatedMoves = 0;
+        long thinkMicros = 0;
+        long mismatches = 0;
+        long start = System.nanoTime();
+        for (String file : args)
+        {
+            try (GameRecordReader reader = open(Paths.get(file)))
+            {
+                while (reader.hasNext())
+                {
+                    GameRecord record = reader.next();
+                    Board board = record.replay().getBoard();
+                    if (board.getLeftScore() != reader.getLeftScore()
+                            || board.getRightScore() != reader.getRightScore())
+                    {
+                        mismatches++;
+                    }
+                    games++;
+                    moves += record.getMoveCount();
+                    if (reader.isComplete())
+                    {
+                        completeGames++;
+                        if (board.getLeftScore() > board.getRightScore())
+                        {
+                            leftWins++;
+                        }
+                        else if (board.getRightScore() > board.getLeftScore())
+                        {
+                            rightWins++;
+                        }
+                        else
+                        {
+                            draws++;
+                        }
+                    }
+                    for (int i = 0; i < record.getMoveCount(); i++)
+                    {
+                        if (record.getFitness(i) != GameRecord.NO_FITNESS)
+                        {
+                            evaluatedMoves++;
+                            thinkMicros += record.getThinkMicros(i);
+                        }
+                    }
+                }
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+
+        System.out.printf("%,d games (%,d complete), %,d moves, %.1f moves per game%n",
+                games, completeGames, moves, games == 0 ? 0 : (double) moves / games);
+        System.out.printf("LEFT wins %,d, RIGHT wins %,d, ties %,d%n", leftWins, rightWins, draws);
+        if (evaluatedMoves > 0)
+        {
+            System.out.printf("%,d searched moves, %.1f ms per move%n", evaluatedMoves,
+                    thinkMicros / 1e3 / evaluatedMoves);
+        }
+        System.out.printf("replayed in %.1f ms (%,.0f moves/s)%n", elapsed / 1e6, moves * 1e9 / Math.max(elapsed, 1));
+        if (mismatches > 0)
+        {
+            System.out.printf("%,d games do not replay to their recorded scores%n", mismatches);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Returns true if there is another record in the file
+     */
+    public boolean hasNext()
+    {
+        return windowStart + window.position() < size;
+    }
+
+    /**
+     * Reads the next record
+     * @throws IOException if the record is truncated or corrupt
+     * @throws NoSuchElementException if there are no more records
+     */
+    public GameRecord next() throws IOException
+    {
+        if (!hasNext())
+        {
+            throw new NoSuchElementException();
+        }
+        ensureAvailable(GameRecordWriter.RECORD_HEADER_SIZE);
+        int moveCount = Short.toUnsignedInt(window.getShort(window.position()));
+        int flags = window.get(window.position() + Short.BYTES);
+        ensureAvailable(GameRecordWriter.getRecordSize(moveCount, flags));
+
+        window.position(window.position() + Short.BYTES + 1);
+        leftScore = Byte.toUnsignedInt(window.get());
+        rightScore = Byte.toUnsignedInt(window.get());
+        complete = (flags & GameRecordWriter.COMPLETE) != 0;
+        byte[] moves = new byte[moveCount];
+        window.get(moves);
+        for (byte move : moves)
+        {
+            if (move < 1 || move > GameState.SLOTS_PER_SIDE)
+            {
+                throw new IOException("Corrupt game record at byte " + (windowStart + window.position()) + ": " + path);
+            }
+        }
+        short[] fitnesses = null;
+        int[] thinkMicros = null;
+        if ((flags & GameRecordWriter.EVALUATIONS) != 0)
+        {
+            fitnesses = new short[moveCount];
+            thinkMicros = new int[moveCount];
+            for (int i = 0; i < moveCount; i++)
+            {
+                fitnesses[i] = window.getShort();
+                thinkMicros[i] = window.getInt();
+            }
+        }
+        return new GameRecord(moves, fitnesses, thinkMicros);
+    }
+
+    /**
+     * Gets the left player's score at the end of the record last read, as stored in the file
+     */
+    public int getLeftScore()
+    {
+        return leftScore;
+    }
+
+    /**
+     * Gets the right player's score at the end of the record last read, as stored in the file
+     */
+    public int getRightScore()
+    {
+        return rightScore;
+    }
+
+    /**
+     * Returns true if the game of the record last read is complete
+     */
+    public boolean isComplete()
+    {
+        return complete;
+    }
+
+    public void close() throws IOException
+    {
+        channel.close();
+    }
+
+    // Moves the window to the current position if fewer than the specified number of bytes are left in it
+    private void ensureAvailable(int bytes) throws IOException
+    {
+        if (window.remaining() >= bytes)
+        {
+            return;
+        }
+        long position = windowStart + window.position();
+        if (position + bytes > size)
+        {
+            throw new IOException("Truncated game record at byte " + position + ": " + path);
+        }
+        map(position);
+    }
+
+    private void map(long position) throws IOException
+    {
+        window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(size - position, MAX_WINDOW_SIZE));
+        windowStart = position;
+    }
+}
@@ -0,0 +1,183 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Appends game records to a file in a compact binary format, collecting them in a buffer that is written to the file
+ * whenever it is full, on {@link #flush} and on {@link #close}.
+ *
+ * File format: the magic number {@link #MAGIC} and the format version (int), followed by the records. Each record
+ * consists of the number of moves (unsigned short), the flags (byte), the final scores of the left and right player
+ * (bytes) and one byte per move holding the chosen slot. If {@link #EVALUATIONS} is set, the moves are followed by
+ * the fitness (short), in the units of {@link EvaluationWeights}, and the thinking time in microseconds (int) of every
+ * move.
+ */
+public class GameRecordWriter implements Closeable
+{
+    public static final int MAGIC = 0x4D47524E;
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = Integer.BYTES * 2;
+    public static final int RECORD_HEADER_SIZE = Short.BYTES + 3;
+
+    /**
+     * The flag of records holding the fitness and thinking time of every move
+     */
+    public static final int EVALUATIONS = 1;
+
+    /**
+     * The flag of records of games that are complete
+     */
+    public static final int COMPLETE = 2;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private long recordCount;
+
+    private GameRecordWriter(FileChannel channel)
+    {
+        this.channel = channel;
+    }
+
+    /**
+     * Opens a file for appending records, creating it if it does not exist
+     * @throws IOException if the file cannot be written or is not a game record file
+     */
+    public static GameRecordWriter open(Path path) throws IOException
+    {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try
+        {
+            GameRecordWriter writer = new GameRecordWriter(channel);
+            if (channel.size() == 0)
+            {
+                writer.buffer.putInt(MAGIC).putInt(VERSION);
+            }
+            else
+            {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                while (header.hasRemaining() && header.position() < channel.size())
+                {
+                    channel.read(header, header.position());
+                }
+                if (header.hasRemaining() || header.getInt(0) != MAGIC || header.getInt(Integer.BYTES) != VERSION)
+                {
+                    throw new IOException("Not a game record file: " + path);
+                }
+            }
+            channel.position(channel.size());
+            return writer;
+        }
+        catch (IOException | RuntimeException e)
+        {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Appends a record to the file
+     * @throws IllegalStateException if a move of the record is not valid in the state it is made in
+     */
+    public synchronized void write(GameRecord record) throws IOException
+    {
+        // Replaying validates the moves, so the reader can rely on them, and yields the scores stored in the header
+        GameState state = record.replay();
+        Board board = state.getBoard();
+        int moveCount = record.getMoveCount();
+        int flags = (record.hasEvaluations() ? EVALUATIONS : 0) | (state.gameIsComplete() ? COMPLETE : 0);
+        int size = getRecordSize(moveCount, flags);
+
+        ByteBuffer target = buffer;
+        if (size > buffer.remaining())
+        {
+            writeBuffer();
+            if (size > buffer.capacity())
+            {
+                target = ByteBuffer.allocate(size);
+            }
+        }
+        target.putShort((short) moveCount);
+        target.put((byte) flags);
+        target.put((byte) board.getLeftScore());
+        target.put((byte) board.getRightScore());
+        for (int i = 0; i < moveCount; i++)
+        {
+            target.put((byte) record.getMove(i));
+        }
+        if ((flags & EVALUATIONS) != 0)
+        {
+            for (int i = 0; i < moveCount; i++)
+            {
+                target.putShort((short) record.getFitness(i));
+                target.putInt(record.getThinkMicros(i));
+            }
+        }
+        if (target != buffer)
+        {
+            target.flip();
+            writeFully(target);
+        }
+        recordCount++;
+    }
+
+    /**
+     * Gets the number of bytes a record with the specified number of moves and flags takes up in the file
+     */
+    static int getRecordSize(int moveCount, int flags)
+    {
+        int moveSize = (flags & EVALUATIONS) != 0 ? 1 + Short.BYTES + Integer.BYTES : 1;
+        return RECORD_HEADER_SIZE + moveCount * moveSize;
+    }
+
+    /**
+     * Gets the number of records written since the file was opened
+     */
+    public synchronized long getRecordCount()
+    {
+        return recordCount;
+    }
+
+    /**
+     * Writes the buffered records to the file
+     */
+    public synchronized void flush() throws IOException
+    {
+        writeBuffer();
+    }
+
+    /**
+     * Writes the buffered records to the file and closes it
+     */
+    public synchronized void close() throws IOException
+    {
+        try
+        {
+            writeBuffer();
+        }
+        finally
+        {
+            channel.close();
+        }
+    }
+
+    private void writeBuffer() throws IOException
+    {
+        buffer.flip();
+        writeFully(buffer);
+        buffer.clear();
+    }
+
+    private void writeFully(ByteBuffer source) throws IOException
+    {
+        while (source.hasRemaining())
+        {
+            channel.write(source);
+        }
+    }
+}
@@ -0,0 +1,541 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A server hosting many concurrent games between remote players and computer players over TCP.
+ *
+ * Every connection is a session served by its own thread, which is a virtual thread when the JVM supports them, so
+ * that thousands of mostly idle sessions cost little. The computers of all sessions run their searches in one shared
+ * engine and share one transposition table, and at most a fixed number of searches run at the same time; sessions
+ * waiting for a search are served in the order they asked. No computer takes longer than
+ * {@link #MAX_TIME_BUDGET_MILLIS} for a move, and the searches of a session are cancelled as soon as its client quits
+ * or disconnects, or the server is closed, so that they do not take capacity from other sessions.
+ *
+ * The protocol is line based. The server greets every client with {@code HELLO mancala 1} and answers each command
+ * with one or more lines:
+ * <pre>
+ * NEW &lt;difficulty&gt; [FIRST|SECOND]  starts a game against a computer, the client moving first by default
+ * MOVE &lt;slot&gt;                        performs a move in one of the client's slots, numbered 1 to 6 from the store
+ * STATE                              shows the state of the game
+ * QUIT                               closes the session
+ * </pre>
+ * After starting a game and after each move, the server reports every move of the computer as {@code AI <slot>}
+ * followed by either {@code STATE <YOU|AI> <the client's slots 1 to 6> <the client's store> <the computer's slots 1
+ * to 6> <the computer's store>} or, once the game is complete, {@code END <the client's score> <the computer's score>
+ * <WIN|LOSS|TIE>}. Invalid commands are answered with {@code ERROR <message>}.
+ */
+public class GameServer implements AutoCloseable
+{
+    public static final int DEFAULT_PORT = 7337;
+
+    // Limits of the difficulty levels clients may ask for, which protect the shared search capacity
+    public static final int MAX_DEPTH = 14;
+    public static final long MAX_TIME_BUDGET_MILLIS = 10_000;
+
+    /**
+     * The shortest time between two generations of the shared transposition table. Computers do not age the table
+     * with each of their searches, which would make the entries stored by concurrent sessions old almost at once.
+     */
+    public static final long TABLE_AGING_INTERVAL_MILLIS = 1000;
+
+    private static final int DEFAULT_TABLE_SIZE_MB = 256;
+
+    private final ServerSocket serverSocket;
+    private final SearchEngine engine;
+    private final TranspositionTable transpositionTable;
+    private final Semaphore searchPermits;
+    private final ExecutorService sessionExecutor = newSessionExecutor("mancala-session");
+    private final Set<Socket> sockets = ConcurrentHashMap.newKeySet();
+    private Thread acceptThread;
+
+    private final AtomicInteger activeSessions = new AtomicInteger();
+    private final AtomicLong sessionCount = new AtomicLong();
+    private final AtomicLong searchCount = new AtomicLong();
+    private final AtomicLong lastTableAging = new AtomicLong(System.nanoTime());
+
+    /**
+     * Creates a server listening on the loopback interface
+     * @param port the port to listen on, or 0 to use any free port
+     * @param maxConcurrentSearches the largest number of computer searches running at the same time
+     * @param engine the engine in which all computers run their searches
+     * @param transpositionTableSizeInMB the size of the transposition table shared by all computers
+     */
+    public GameServer(int port, int maxConcurrentSearches, SearchEngine engine, int transpositionTableSizeInMB)
+            throws IOException
+    {
+        this.serverSocket = new ServerSocket(port, 1024, InetAddress.getLoopbackAddress());
+        this.engine = engine;
+        this.transpositionTable = new TranspositionTable(transpositionTableSizeInMB);
+        this.searchPermits = new Semaphore(maxConcurrentSearches, true);
+    }
+
+    /**
+     * Runs a server until the JVM is stopped.
+     * Usage: {@code GameServer [<port>] [--searches <concurrent searches>] [--table <transposition table MB>]}
+     */
+    public static void main(String[] args) throws IOException, InterruptedException
+    {
+        int port = DEFAULT_PORT;
+        int searches = Runtime.getRuntime().availableProcessors();
+        int tableSize = DEFAULT_TABLE_SIZE_MB;
+        for (int i = 0; i < args.length; i++)
+        {
+            switch (args[i])
+            {
+                case "--searches":
+                    searches = Integer.parseInt(args[++i]);
+                    break;
+                case "--table":
+                    tableSize = Integer.parseInt(args[++i]);
+                    break;
+                default:
+                    port = Integer.parseInt(args[i]);
+            }
+        }
+
+        GameServer server = new GameServer(port, searches, SearchEngine.getDefault(), tableSize);
+        server.start();
+        System.out.println("Serving Mancala on port " + server.getPort() + " with " + searches
+                + " concurrent searches" + (isUsingVirtualThreads() ? " and virtual threads" : ""));
+        server.acceptThread.join();
+    }
+
+    /**
+     * Creates an executor that runs each task in a new virtual thread, or in a cached platform thread if the JVM
+     * does not support virtual threads
+     */
+    static ExecutorService newSessionExecutor(String namePrefix)
+    {
+        try
+        {
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+        }
+        catch (ReflectiveOperationException e)
+        {
+            AtomicInteger threadCount = new AtomicInteger();
+            return Executors.newCachedThreadPool(runnable ->
+            {
+                Thread thread = new Thread(runnable, namePrefix + "-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    static boolean isUsingVirtualThreads()
+    {
+        try
+        {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return true;
+        }
+        catch (NoSuchMethodException e)
+        {
+            return false;
+        }
+    }
+
+    /**
+     * Starts accepting connections in the background
+     */
+    public synchronized void start()
+    {
+        if (acceptThread != null)
+        {
+            throw new IllegalStateException("Server already started");
+        }
+        acceptThread = new Thread(this::acceptConnections, "mancala-server-accept");
+        acceptThread.start();
+    }
+
+    private void acceptConnections()
+    {
+        while (!serverSocket.isClosed())
+        {
+            try
+            {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                sockets.add(socket);
+                sessionExecutor.execute(() -> serveSession(socket));
+            }
+            catch (IOException e)
+            {
+                if (!serverSocket.isClosed())
+                {
+                    System.err.println("Failed to accept a connection: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void serveSession(Socket socket)
+    {
+        activeSessions.incrementAndGet();
+        sessionCount.incrementAndGet();
+        try (Socket s = socket;
+             BufferedReader in = new BufferedReader(
+                     new InputStreamReader(s.getInputStream(), StandardCharsets.US_ASCII));
+             PrintWriter out = new PrintWriter(s.getOutputStream(), false, StandardCharsets.US_ASCII))
+        {
+            new Session(in, out).run();
+        }
+        catch (SocketException e)
+        {
+            // The client disconnected or the server is shutting down
+        }
+        catch (IOException e)
+        {
+            System.err.println("Session failed: " + e.getMessage());
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        finally
+        {
+            sockets.remove(socket);
+            activeSessions.decrementAndGet();
+        }
+    }
+
+    // Starts a new generation of the shared transposition table if the last one started at least
+    // TABLE_AGING_INTERVAL_MILLIS ago, so that all sessions age the table together at a fixed pace
+    private void ageTranspositionTable()
+    {
+        long now = System.nanoTime();
+        long last = lastTableAging.get();
+        if (now - last >= TimeUnit.MILLISECONDS.toNanos(TABLE_AGING_INTERVAL_MILLIS)
+                && lastTableAging.compareAndSet(last, now))
+        {
+            transpositionTable.newSearch();
+        }
+    }
+
+    public int getPort()
+    {
+        return serverSocket.getLocalPort();
+    }
+
+    public int getActiveSessionCount()
+    {
+        return activeSessions.get();
+    }
+
+    public long getSessionCount()
+    {
+        return sessionCount.get();
+    }
+
+    /**
+     * Gets the number of computer searches run by all sessions
+     */
+    public long getSearchCount()
+    {
+        return searchCount.get();
+    }
+
+    /**
+     * Gets the number of sessions waiting for a computer search to start
+     */
+    public int getQueuedSearchCount()
+    {
+        return searchPermits.getQueueLength();
+    }
+
+    /**
+     * Stops accepting connections and closes all sessions. The engine is not closed, since it may be shared.
+     */
+    public void close() throws IOException
+    {
+        serverSocket.close();
+        for (Socket socket : sockets)
+        {
+            socket.close();
+        }
+        sessionExecutor.shutdownNow();
+        try
+        {
+            sessionExecutor.awaitTermination(1, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // The state of a single connection, which plays one game at a time
+    private class Session
+    {
+        private final BufferedReader in;
+        private final PrintWriter out;
+
+        private GameState state;
+        private PlayerRepresentation clientSide;
+        private AI computer;
+
+        // Cancels the searches of the session once the client quits or disconnects
+        private final CancellationToken cancellationToken = new CancellationToken();
+
+        // The client's next line, read in the background while the computer is searching, or null if it is read
+        // directly
+        private CompletableFuture<String> nextLine;
+
+        private Session(BufferedReader in, PrintWriter out)
+        {
+            this.in = in;
+            this.out = out;
+        }
+
+        private void run() throws IOException, InterruptedException
+        {
+            send("HELLO mancala 1");
+            out.flush();
+            String line;
+            while ((line = readLine()) != null)
+            {
+                String[] command = line.trim().split("\\s+");
+                switch (command[0].toUpperCase())
+                {
+                    case "NEW":
+                        startGame(command);
+                        break;
+                    case "MOVE":
+                        performMove(command);
+                        break;
+                    case "STATE":
+                        sendState();
+                        break;
+                    case "QUIT":
+                        send("BYE");
+                        return;
+                    case "":
+                        break;
+                    default:
+                        send("ERROR Unknown command: " + command[0]);
+                }
+                out.flush();
+            }
+        }
+
+        private void startGame(String[] command) throws InterruptedException
+        {
+            if (command.length < 2 || command.length > 3)
+            {
+                send("ERROR Usage: NEW <difficulty> [FIRST|SECOND]");
+                return;
+            }
+            Difficulty difficulty;
+            try
+            {
+                difficulty = Difficulty.parse(command[1]);
+            }
+            catch (IllegalArgumentException e)
+            {
+                send("ERROR " + e.getMessage());
+                return;
+            }
+            if (difficulty.isMonteCarlo() || difficulty.getDepth() > MAX_DEPTH
+                    || difficulty.getTimeBudgetMillis() > MAX_TIME_BUDGET_MILLIS)
+            {
+                send("ERROR Difficulty must be a depth of at most " + MAX_DEPTH + " or a time of at most "
+                        + MAX_TIME_BUDGET_MILLIS + "ms");
+                return;
+            }
+            boolean clientFirst = command.length < 3 || command[2].equalsIgnoreCase("FIRST");
+            if (!clientFirst && !command[2].equalsIgnoreCase("SECOND"))
+            {
+                send("ERROR Usage: NEW <difficulty> [FIRST|SECOND]");
+                return;
+            }
+
+            state = GameState.getInitialState();
+            clientSide = clientFirst
+                    ? GameState.FIRST_PLAYER
+                    : PlayerRepresentation.getOpposite(GameState.FIRST_PLAYER);
+            computer = difficulty.createAI(engine, transpositionTable);
+            computer.setTranspositionTableAging(false);
+            computer.setMoveTimeLimit(MAX_TIME_BUDGET_MILLIS);
+            computer.setCancellationToken(cancellationToken);
+            playComputerMoves();
+        }
+
+        private void performMove(String[] command) throws InterruptedException
+        {
+            if (state == null || state.gameIsComplete())
+            {
+                send("ERROR No game in progress");
+                return;
+            }
+            int move;
+            try
+            {
+                move = Integer.parseInt(command.length == 2 ? command[1] : "");
+            }
+            catch (NumberFormatException e)
+            {
+                send("ERROR Usage: MOVE <slot>");
+                return;
+            }
+            if (!GamePlayer.isValidMove(state, move))
+            {
+                send("ERROR Invalid move: " + move);
+                return;
+            }
+            state = GamePlayer.performMove(state, move);
+            SearchMetrics.getDefault().recordPlayedMove();
+            playComputerMoves();
+        }
+
+        // Performs the moves of the computer until it is the client's turn or the game is complete, then reports
+        // the resulting state
+        private void playComputerMoves() throws InterruptedException
+        {
+            while (!state.gameIsComplete() && state.getActivePlayer() != clientSide)
+            {
+                watchConnection();
+                int move;
+                searchPermits.acquire();
+                try
+                {
+                    ageTranspositionTable();
+                    move = computer.chooseNextMove(state);
+                }
+                catch (SearchCancelledException e)
+                {
+                    // The client quit or disconnected, which the session finds when it reads the next line
+                    return;
+                }
+                finally
+                {
+                    searchPermits.release();
+                }
+                searchCount.incrementAndGet();
+                state = GamePlayer.performMove(state, move);
+                SearchMetrics.getDefault().recordPlayedMove();
+                send("AI " + move);
+            }
+            sendState();
+        }
+
+        // Reads the client's next line in the background unless it is already being read, so that the searches of the
+        // session are cancelled as soon as the client quits or disconnects while the computer is thinking. The line is
+        // handled by the session once the computer is done.
+        private void watchConnection()
+        {
+            if (nextLine != null)
+            {
+                return;
+            }
+            try
+            {
+                nextLine = CompletableFuture.supplyAsync(() ->
+                {
+                    try
+                    {
+                        String line = in.readLine();
+                        if (line == null || line.trim().equalsIgnoreCase("QUIT"))
+                        {
+                            cancellationToken.cancel();
+                        }
+                        return line;
+                    }
+                    catch (IOException e)
+                    {
+                        cancellationToken.cancel();
+                        throw new UncheckedIOException(e);
+                    }
+                }, sessionExecutor);
+            }
+            catch (RejectedExecutionException e)
+            {
+                // The server is shutting down
+                cancellationToken.cancel();
+            }
+        }
+
+        // Reads the client's next line, or null at the end of the stream
+        private String readLine() throws IOException, InterruptedException
+        {
+            if (nextLine == null)
+            {
+                return in.readLine();
+            }
+            CompletableFuture<String> line = nextLine;
+            nextLine = null;
+            try
+            {
+                return line.get();
+            }
+            catch (ExecutionException e)
+            {
+                throw e.getCause() instanceof UncheckedIOException
+                        ? ((UncheckedIOException) e.getCause()).getCause()
+                        : new IOException(e.getCause());
+            }
+        }
+
+        private void sendState()
+        {
+            if (state == null)
+            {
+                send("ERROR No game in progress");
+                return;
+            }
+            Board board = state.getBoard();
+            int clientScore = clientSide == PlayerRepresentation.LEFT ? board.getLeftScore() : board.getRightScore();
+            int computerScore = clientSide == PlayerRepresentation.LEFT
+                    ? board.getRightScore()
+                    : board.getLeftScore();
+            if (state.gameIsComplete())
+            {
+                String result = clientScore > computerScore ? "WIN" : clientScore < computerScore ? "LOSS" : "TIE";
+                send("END " + clientScore + " " + computerScore + " " + result);
+                return;
+            }
+
+            boolean clientActive = state.getActivePlayer() == clientSide;
+            int[] clientSlots = clientActive ? state.getSlots() : state.getOpponentSlots();
+            int[] computerSlots = clientActive ? state.getOpponentSlots() : state.getSlots();
+            StringBuilder line = new StringBuilder("STATE ").append(clientActive ? "YOU" : "AI");
+            for (int stones : clientSlots)
+            {
+                line.append(' ').append(stones);
+            }
+            line.append(' ').append(clientScore);
+            for (int stones : computerSlots)
+            {
+                line.append(' ').append(stones);
+            }
+            line.append(' ').append(computerScore);
+            send(line.toString());
+        }
+
+        private void send(String line)
+        {
+            out.print(line);
+            out.print("\r\n");
+        }
+    }
+}
@@ -0,0 +1,401 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Solves a state exactly: finds the final difference between the scores of its active player and their opponent
+ * when both play perfectly until the end of the game, along with a principal variation leading to it.
+ *
+ * The solver uses MTD(f): instead of a single search with a wide window, it runs a sequence of null-window searches,
+ * each of which only determines whether the value is above or below a test value, and moves the test value towards
+ * the bound established by the previous search until the lower and upper bounds meet. Null-window searches cut off
+ * far more than a wide-window search, and the transposition table carries the bounds between them so that each search
+ * mostly visits states whose bounds have to be refined. Unlike {@link MoveEvaluator}, every state is searched until
+ * the game is complete, so values are whole stones and there is no evaluation at a horizon.
+ *
+ * Two properties of the end of the game prune the search further: the final difference can differ from the current
+ * one by at most the number of stones left in the slots, so states whose range of possible values lies outside the
+ * window are cut off without searching their moves, and the exact value of states with few stones left is looked up
+ * in the {@link EndgameDatabase} of the context, if any.
+ */
+public class GameSolver
+{
+    /**
+     * The size of the transposition table used by the command-line solver by default
+     */
+    public static final int DEFAULT_TABLE_SIZE_MB = 256;
+
+    // Progress is reported whenever the number of states visited is a multiple of this
+    private static final int PROGRESS_INTERVAL = 1 << 22;
+
+    // Whether the solver is stopped is checked whenever the number of states visited is a multiple of this
+    private static final int STOP_CHECK_INTERVAL = 1024;
+
+    /**
+     * Receives the progress of a solver while it is running
+     */
+    public interface ProgressListener
+    {
+        /**
+         * Called periodically and after every null-window search
+         * @param nodeCount the number of states visited so far
+         * @param lowerBound the largest value the state is known to reach
+         * @param upperBound the smallest value the state is known not to exceed
+         */
+        void progress(long nodeCount, int lowerBound, int upperBound);
+    }
+
+    private final SearchContext context;
+    private final TranspositionTable transpositionTable;
+    private final MoveOrdering moveOrdering;
+    private final EndgameDatabase endgameDatabase;
+    private ProgressListener progressListener;
+
+    private SearchBoard board;
+    private int lowerBound;
+    private int upperBound;
+    private long nodeCount;
+    private int searchCount;
+    private int[] principalVariation = new int[0];
+
+    // The moves of every level of the search and their ranks, reused between nodes
+    private int[][] moveLists = new int[0][];
+    private int[][] rankLists = new int[0][];
+
+    /**
+     * Creates a solver
+     * @param context the transposition table, move ordering, endgame database, deadline and cancellation token of
+     *                the solver. The table must not be shared with depth-limited searches, whose values are not
+     *                exact.
+     */
+    public GameSolver(SearchContext context)
+    {
+        if (context.getTranspositionTable() == null)
+        {
+            throw new IllegalArgumentException("The solver needs a transposition table");
+        }
+        this.context = context;
+        this.transpositionTable = context.getTranspositionTable();
+        this.moveOrdering = context.getMoveOrdering();
+        this.endgameDatabase = context.getEndgameDatabase();
+    }
+
+    /**
+     * Solves the positions given on the command line, reporting the progress of each on the standard error stream.
+     * Positions are written as by {@link BatchAnalyzer#formatPosition}. The endgame database named by the
+     * {@value EndgameDatabase#DEFAULT_PATH_PROPERTY} system property is used if it is set.
+     * Usage: {@code GameSolver "<position>" [...] [--table <transposition table MB>]}
+     */
+    public static void main(String[] args)
+    {
+        int tableSizeInMB = DEFAULT_TABLE_SIZE_MB;
+        List<GameState> states = new ArrayList<>();
+        try
+        {
+            for (int i = 0; i < args.length; i++)
+            {
+                if (args[i].equals("--table"))
+                {
+                    tableSizeInMB = Integer.parseInt(args[++i]);
+                }
+                else
+                {
+                    states.add(BatchAnalyzer.parsePosition(args[i]));
+                }
+            }
+        }
+        catch (IllegalArgumentException | IndexOutOfBoundsException e)
+        {
+            states.clear();
+        }
+        if (states.isEmpty())
+        {
+            System.err.println("Usage: GameSolver \"<position>\" [...] [--table <transposition table MB>]");
+            System.exit(1);
+        }
+
+        TranspositionTable transpositionTable = new TranspositionTable(tableSizeInMB);
+        SearchContext context = new SearchContext(transpositionTable)
+                .withEndgameDatabase(EndgameDatabase.getDefault());
+        GameSolver solver = new GameSolver(context);
+        long[] start = new long[1];
+        solver.setProgressListener((nodeCount, lowerBound, upperBound) ->
+                System.err.printf("  %,d nodes, value in [%d, %d], %.1f s%n", nodeCount, lowerBound, upperBound,
+                        (System.nanoTime() - start[0]) / 1e9));
+        for (GameState state : states)
+        {
+            System.out.println(BatchAnalyzer.formatPosition(state));
+            start[0] = System.nanoTime();
+            int value = solver.solve(state);
+            long elapsed = System.nanoTime() - start[0];
+
+            StringBuilder line = new StringBuilder();
+            for (int move : solver.getPrincipalVariation())
+            {
+                line.append(line.length() == 0 ? "" : " ").append(move);
+            }
+            System.out.printf("value %+d, principal variation %s%n", value, line);
+            System.out.printf("%,d nodes in %d null-window searches, %.1f s (%,.0f nodes/s), table hit rate %.1f%%%n",
+                    solver.getNodeCount(), solver.getSearchCount(), elapsed / 1e9,
+                    solver.getNodeCount() * 1e9 / Math.max(elapsed, 1), transpositionTable.getHitRate() * 100);
+        }
+    }
+
+    /**
+     * Sets the listener notified of the progress of the solver, or null to not report progress
+     */
+    public void setProgressListener(ProgressListener progressListener)
+    {
+        this.progressListener = progressListener;
+    }
+
+    /**
+     * Solves the specified state
+     * @return the final score of the state's active player minus the final score of their opponent under perfect
+     *         play
+     * @throws SearchCancelledException if the deadline of the context passes or the solver is cancelled before the
+     *                                  state is solved
+     */
+    public int solve(GameState state)
+    {
+        board = new SearchBoard(state, EvaluationWeights.SCORE_ONLY);
+        nodeCount = 0;
+        searchCount = 0;
+        transpositionTable.newSearch();
+        moveOrdering.newSearch();
+
+        int difference = board.getScore() - board.getOpponentScore();
+        lowerBound = difference - board.getStonesOnBoard();
+        upperBound = difference + board.getStonesOnBoard();
+
+        // The current difference is as good a first guess as any, since most stones end up on the side they are on
+        int guess = difference;
+        while (lowerBound < upperBound)
+        {
+            int beta = guess == lowerBound ? guess + 1 : guess;
+            guess = search(beta - 1, beta, 0);
+            searchCount++;
+            if (guess < beta)
+            {
+                upperBound = guess;
+            }
+            else
+            {
+                lowerBound = guess;
+            }
+            reportProgress();
+        }
+
+        principalVariation = findPrincipalVariation(lowerBound);
+        return lowerBound;
+    }
+
+    // Calculates the final difference between the scores from the perspective of the active player, exactly if it
+    // lies within the window and otherwise as a bound on the side of the window it lies on (fail-soft)
+    private int search(int alpha, int beta, int ply)
+    {
+        if (++nodeCount % STOP_CHECK_INTERVAL == 0)
+        {
+            if (context.isStopped())
+            {
+                throw new SearchCancelledException();
+            }
+            if (nodeCount % PROGRESS_INTERVAL == 0)
+            {
+                reportProgress();
+            }
+        }
+
+        int difference = board.getScore() - board.getOpponentScore();
+        if (board.isGameComplete())
+        {
+            return difference;
+        }
+
+        // Every stone left in the slots ends up in either store, so the value lies within this range
+        int stonesOnBoard = board.getStonesOnBoard();
+        if (difference + stonesOnBoard <= alpha)
+        {
+            return difference + stonesOnBoard;
+        }
+        if (difference - stonesOnBoard >= beta)
+        {
+            return difference - stonesOnBoard;
+        }
+        if (endgameDatabase != null && endgameDatabase.contains(board))
+        {
+            return difference + endgameDatabase.probe(board);
+        }
+
+        long hash = board.getHash();
+        long entry = transpositionTable.probe(hash);
+        int transpositionTableMove = -1;
+        if (entry != 0)
+        {
+            int score = TranspositionTable.getScore(entry);
+            int bound = TranspositionTable.getBound(entry);
+            if (bound == TranspositionTable.EXACT
+                    || (bound == TranspositionTable.LOWER_BOUND && score >= beta)
+                    || (bound == TranspositionTable.UPPER_BOUND && score <= alpha))
+            {
+                return score;
+            }
+            transpositionTableMove = TranspositionTable.getMove(entry);
+        }
+
+        int[] moves = getMoveList(ply);
+        int moveCount = board.generateMoves(moves);
+        moveOrdering.sort(board, moves, getRankList(ply), moveCount, transpositionTableMove, ply);
+
+        int originalAlpha = alpha;
+        int bestValue = Integer.MIN_VALUE;
+        int bestMove = -1;
+        for (int i = 0; i < moveCount; i++)
+        {
+            int value = searchMove(moves[i], alpha, beta, ply);
+            if (value > bestValue)
+            {
+                bestValue = value;
+                bestMove = moves[i];
+                if (bestValue > alpha)
+                {
+                    alpha = bestValue;
+                }
+                if (alpha >= beta)
+                {
+                    moveOrdering.recordCutoff(board, bestMove, i, stonesOnBoard, ply);
+                    break;
+                }
+            }
+        }
+
+        int bound = TranspositionTable.EXACT;
+        if (bestValue <= originalAlpha)
+        {
+            bound = TranspositionTable.UPPER_BOUND;
+        }
+        else if (bestValue >= beta)
+        {
+            bound = TranspositionTable.LOWER_BOUND;
+        }
+        // States with more stones left take longer to solve, so their entries are the last to be replaced
+        transpositionTable.store(hash, stonesOnBoard, bound, bestValue, bestMove);
+        return bestValue;
+    }
+
+    // Performs the specified move and searches the resulting state, returning its value from the perspective of the
+    // player performing the move
+    private int searchMove(int move, int alpha, int beta, int ply)
+    {
+        PlayerRepresentation activePlayer = board.getActivePlayer();
+        board.makeMove(move);
+        int value = board.getActivePlayer() == activePlayer
+                ? search(alpha, beta, ply + 1)
+                : -search(-beta, -alpha, ply + 1);
+        board.unmakeMove();
+        return value;
+    }
+
+    // Follows moves reaching the specified value from the root until the game is complete. A move reaches the value
+    // if a null-window search just below the value fails high, which the bounds left in the table mostly settle.
+    private int[] findPrincipalVariation(int value)
+    {
+        List<Integer> moves = new ArrayList<>();
+        int ply = 0;
+        while (!board.isGameComplete())
+        {
+            int[] candidates = getMoveList(ply);
+            long entry = transpositionTable.probe(board.getHash());
+            int moveCount = board.generateMoves(candidates);
+            moveOrdering.sort(board, candidates, getRankList(ply), moveCount,
+                    entry == 0 ? -1 : TranspositionTable.getMove(entry), ply);
+
+            int bestMove = -1;
+            for (int i = 0; i < moveCount && bestMove == -1; i++)
+            {
+                if (searchMove(candidates[i], value - 1, value, ply) >= value)
+                {
+                    bestMove = candidates[i];
+                }
+            }
+
+            PlayerRepresentation activePlayer = board.getActivePlayer();
+            board.makeMove(bestMove);
+            moves.add(bestMove);
+            ply++;
+            if (board.getActivePlayer() != activePlayer)
+            {
+                value = -value;
+            }
+        }
+        for (int i = 0; i < ply; i++)
+        {
+            board.unmakeMove();
+        }
+
+        int[] principalVariation = new int[moves.size()];
+        for (int i = 0; i < principalVariation.length; i++)
+        {
+            principalVariation[i] = moves.get(i);
+        }
+        return principalVariation;
+    }
+
+    private void reportProgress()
+    {
+        if (progressListener != null)
+        {
+            progressListener.progress(nodeCount, lowerBound, upperBound);
+        }
+    }
+
+    private int[] getMoveList(int ply)
+    {
+        if (ply >= moveLists.length)
+        {
+            int levels = Math.max(ply + 1, moveLists.length * 2);
+            moveLists = growLists(moveLists, levels);
+            rankLists = growLists(rankLists, levels);
+        }
+        return moveLists[ply];
+    }
+
+    private int[] getRankList(int ply)
+    {
+        return rankLists[ply];
+    }
+
+    private static int[][] growLists(int[][] lists, int levels)
+    {
+        int[][] newLists = new int[levels][];
+        System.arraycopy(lists, 0, newLists, 0, lists.length);
+        for (int i = lists.length; i < levels; i++)
+        {
+            newLists[i] = new int[GameState.SLOTS_PER_SIDE];
+        }
+        return newLists;
+    }
+
+    /**
+     * Gets the moves of the last solved state that lead to its value under perfect play, up to the end of the game
+     */
+    public int[] getPrincipalVariation()
+    {
+        return principalVariation.clone();
+    }
+
+    /**
+     * Gets the number of states visited while solving the last state, including the search for the principal variation
+     */
+    public long getNodeCount()
+    {
+        return nodeCount;
+    }
+
+    /**
+     * Gets the number of null-window searches it took to solve the last state
+     */
+    public int getSearchCount()
+    {
+        return searchCount;
+    }
+}
@@ -0,0 +1,207 @@
+/**
+ * A search that evaluates the state space of possible moves to increasing depths until its time budget runs out.
+ *
+ * Every iteration after the first starts with an aspiration window around the fitness found by the previous
+ * iteration, which is widened and searched again whenever the fitness falls outside of it. When the time budget
+ * runs out the iteration in progress is abandoned and the best move of the last completed iteration is chosen.
+ *
+ * A search without a time budget keeps deepening until it is given a deadline with {@link #setDeadline}, which may
+ * happen while it is running, or until it reaches its maximum depth. A search whose context is
+ * {@linkplain SearchContext#isSequential() sequential} runs entirely in the thread that calls {@link #search}. A search
+ * whose context is {@linkplain SearchContext#isCancelled() cancelled} is abandoned, even its first iteration.
+ */
+public class IterativeDeepeningSearch
+{
+    /**
+     * The deepest iteration that is ever started, which is only reached once the game is almost complete
+     */
+    public static final int MAX_DEPTH = 64;
+
+    // The initial distance of the bounds of the aspiration window from the fitness of the previous iteration
+    private static final int ASPIRATION_WINDOW = 2 * EvaluationWeights.STONE;
+
+    // A window wider than this cannot be exceeded by any fitness, so the bound is dropped instead
+    private static final int MAX_WINDOW = Zobrist.MAX_STONES * EvaluationWeights.STONE;
+
+    private final SearchContext context;
+    private final long timeBudgetMillis;
+    private final int maxDepth;
+
+    // The context of all iterations after the first, which carries the deadline of the search
+    private final SearchContext timedContext;
+
+    private int completedDepth;
+    private int fitness;
+    private long nodeCount;
+    private long forkCount;
+
+    /**
+     * Creates a time-budgeted search
+     * @param context the structures shared by all iterations of the search
+     * @param timeBudgetMillis the wall-clock time the search may take, in milliseconds, or 0 to search until a
+     *                         deadline is set
+     */
+    public IterativeDeepeningSearch(SearchContext context, long timeBudgetMillis)
+    {
+        this(context, timeBudgetMillis, MAX_DEPTH);
+    }
+
+    /**
+     * Creates a time-budgeted search that stops deepening once it has completed the specified depth
+     * @param context the structures shared by all iterations of the search
+     * @param timeBudgetMillis the wall-clock time the search may take, in milliseconds, or 0 to search until a
+     *                         deadline is set or the maximum depth is reached
+     * @param maxDepth the depth of the last iteration, at most {@link #MAX_DEPTH}
+     */
+    public IterativeDeepeningSearch(SearchContext context, long timeBudgetMillis, int maxDepth)
+    {
+        this.context = context;
+        this.timeBudgetMillis = timeBudgetMillis;
+        this.maxDepth = Math.min(maxDepth, MAX_DEPTH);
+        this.timedContext = context.withDeadline(SearchContext.NO_DEADLINE);
+    }
+
+    /**
+     * Sets the deadline of the search, whether it is running or has not started yet. A deadline that has passed
+     * stops the search as soon as possible.
+     * @param deadline the value of {@link System#nanoTime()} at which the search is stopped
+     */
+    public void setDeadline(long deadline)
+    {
+        timedContext.setDeadline(deadline);
+    }
+
+    /**
+     * Finds the best move in the specified state within the time budget
+     * @param state the current state of the game
+     * @param engine the engine in which the move evaluators are run
+     * @return the best move found by the deepest completed iteration
+     * @throws SearchCancelledException if the search is cancelled through the token of its context
+     */
+    public int search(GameState state, SearchEngine engine)
+    {
+        if (timeBudgetMillis > 0)
+        {
+            setDeadline(System.nanoTime() + timeBudgetMillis * 1_000_000);
+        }
+
+        // The first iteration is never stopped so that there is always a move to choose
+        MoveEvaluator moveEvaluator = new MoveEvaluator(state, 1, context.withDeadline(SearchContext.NO_DEADLINE));
+        invoke(moveEvaluator, engine);
+        int bestMove = moveEvaluator.getBestChildMove();
+        fitness = moveEvaluator.getMaxChildFitness();
+        nodeCount = moveEvaluator.getNodeCount();
+        forkCount = moveEvaluator.getForkCount();
+        completedDepth = 1;
+
+        for (int depth = 2; depth <= maxDepth && !timedContext.isStopped(); depth++)
+        {
+            long iterationStart = System.nanoTime();
+            try
+            {
+                moveEvaluator = searchWithAspirationWindow(state, depth, timedContext, engine);
+            }
+            catch (SearchCancelledException e)
+            {
+                if (context.isCancelled())
+                {
+                    throw e;
+                }
+                break;
+            }
+            bestMove = moveEvaluator.getBestChildMove();
+            fitness = moveEvaluator.getMaxChildFitness();
+            completedDepth = depth;
+
+            // The next iteration takes several times as long as this one, so it is not started if it cannot complete
+            long deadline = timedContext.getDeadline();
+            long now = System.nanoTime();
+            if (deadline != SearchContext.NO_DEADLINE && now - iterationStart > deadline - now)
+            {
+                break;
+            }
+        }
+        if (context.isCancelled())
+        {
+            throw new SearchCancelledException();
+        }
+        return bestMove;
+    }
+
+    // Searches to the specified depth, starting with a narrow window around the fitness of the previous iteration
+    // and widening the side of the window the fitness falls outside of until the fitness lies within it
+    private MoveEvaluator searchWithAspirationWindow(GameState state, int depth, SearchContext context,
+                                                     SearchEngine engine)
+    {
+        int window = ASPIRATION_WINDOW;
+        int alpha = fitness - window;
+        int beta = fitness + window;
+        while (true)
+        {
+            MoveEvaluator moveEvaluator = new MoveEvaluator(state, depth, alpha, beta, context);
+            invoke(moveEvaluator, engine);
+            nodeCount += moveEvaluator.getNodeCount();
+            forkCount += moveEvaluator.getForkCount();
+            int result = moveEvaluator.getMaxChildFitness();
+            if (result <= alpha && alpha != MoveEvaluator.MIN_FITNESS)
+            {
+                window *= 2;
+                alpha = window > MAX_WINDOW ? MoveEvaluator.MIN_FITNESS : fitness - window;
+            }
+            else if (result >= beta && beta != MoveEvaluator.MAX_FITNESS)
+            {
+                window *= 2;
+                beta = window > MAX_WINDOW ? MoveEvaluator.MAX_FITNESS : fitness + window;
+            }
+            else
+            {
+                return moveEvaluator;
+            }
+        }
+    }
+
+    // Runs an evaluator in the engine, or directly in the current thread if it does not fork subtasks
+    private void invoke(MoveEvaluator moveEvaluator, SearchEngine engine)
+    {
+        if (context.isSequential())
+        {
+            moveEvaluator.invoke();
+        }
+        else
+        {
+            engine.invoke(moveEvaluator);
+        }
+    }
+
+    /**
+     * Gets the depth of the last iteration that was completed within the time budget
+     */
+    public int getCompletedDepth()
+    {
+        return completedDepth;
+    }
+
+    /**
+     * Gets the number of states visited by all completed evaluations of the search
+     */
+    public long getNodeCount()
+    {
+        return nodeCount;
+    }
+
+    /**
+     * Gets the number of subtasks forked by all completed evaluations of the search
+     */
+    public long getForkCount()
+    {
+        return forkCount;
+    }
+
+    /**
+     * Gets the fitness of the chosen move, as determined by the last completed iteration
+     */
+    public int getFitness()
+    {
+        return fitness;
+    }
+}
@@ -0,0 +1,148 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * A parallel search in which several threads run independent iterative-deepening searches of the same state that
+ * only cooperate through a shared transposition table (Lazy SMP).
+ *
+ * The main searcher is an {@link IterativeDeepeningSearch} running sequentially in the calling thread, whose result
+ * is the result of the search. Every other thread of the engine runs a helper, which searches the state to
+ * increasing depths without a window or a time budget until the main searcher is done. The helpers fill the table
+ * with the values and best moves of states the main searcher is about to reach, which lets it cut off or order
+ * moves without searching them itself. To keep the threads from searching the same states in the same order, each
+ * helper sorts moves with its own {@link MoveOrdering}, and every other helper starts a level deeper than the main
+ * searcher so that it stays ahead of it.
+ *
+ * Unlike the fork/join search of {@link MoveEvaluator}, the threads never wait for each other, at the cost of
+ * searching many states more than once.
+ */
+public class LazySmpSearch
+{
+    private final SearchContext context;
+    private final IterativeDeepeningSearch mainSearch;
+    private final int maxDepth;
+
+    private long helperNodeCount;
+
+    /**
+     * Creates a time-budgeted search
+     * @param context the structures shared by all searchers; the main searcher uses its move ordering
+     * @param timeBudgetMillis the wall-clock time the search may take, in milliseconds, or 0 to search until a
+     *                         deadline is set or the maximum depth is reached
+     * @param maxDepth the depth of the last iteration of the main searcher
+     */
+    public LazySmpSearch(SearchContext context, long timeBudgetMillis, int maxDepth)
+    {
+        this.context = context.withSequentialSearch();
+        this.mainSearch = new IterativeDeepeningSearch(this.context, timeBudgetMillis, maxDepth);
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * Sets the deadline of the search, whether it is running or has not started yet. A deadline that has passed
+     * stops the search as soon as possible.
+     * @param deadline the value of {@link System#nanoTime()} at which the search is stopped
+     */
+    public void setDeadline(long deadline)
+    {
+        mainSearch.setDeadline(deadline);
+    }
+
+    /**
+     * Finds the best move in the specified state, running a helper in all but one of the threads of the engine
+     * @param state the current state of the game
+     * @param engine the engine whose pool runs the helpers
+     * @return the best move found by the deepest iteration the main searcher completed
+     * @throws SearchCancelledException if the search is cancelled through the token of its context
+     */
+    public int search(GameState state, SearchEngine engine)
+    {
+        List<Helper> helpers = new ArrayList<>();
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for (int i = 1; i < engine.getParallelism(); i++)
+        {
+            Helper helper = new Helper(state, i);
+            helpers.add(helper);
+            tasks.add(engine.getPool().submit(helper::run));
+        }
+
+        try
+        {
+            return mainSearch.search(state, engine);
+        }
+        finally
+        {
+            for (Helper helper : helpers)
+            {
+                helper.context.stop();
+            }
+            for (ForkJoinTask<?> task : tasks)
+            {
+                task.join();
+            }
+            for (Helper helper : helpers)
+            {
+                helperNodeCount += helper.nodeCount;
+            }
+        }
+    }
+
+    /**
+     * Gets the depth of the last iteration the main searcher completed
+     */
+    public int getCompletedDepth()
+    {
+        return mainSearch.getCompletedDepth();
+    }
+
+    /**
+     * Gets the number of states visited by all completed evaluations of the main searcher and the helpers
+     */
+    public long getNodeCount()
+    {
+        return mainSearch.getNodeCount() + helperNodeCount;
+    }
+
+    /**
+     * Gets the fitness of the chosen move, as determined by the last iteration the main searcher completed
+     */
+    public int getFitness()
+    {
+        return mainSearch.getFitness();
+    }
+
+    // A searcher that deepens until it is cancelled or has searched one level deeper than the main searcher will
+    private class Helper
+    {
+        private final GameState state;
+        private final int firstDepth;
+        private final SearchContext context;
+        private long nodeCount;
+
+        private Helper(GameState state, int index)
+        {
+            this.state = state;
+            this.firstDepth = 1 + index % 2;
+            this.context = LazySmpSearch.this.context.withMoveOrdering(new MoveOrdering())
+                    .withDeadline(SearchContext.NO_DEADLINE);
+        }
+
+        private void run()
+        {
+            for (int depth = firstDepth; depth <= maxDepth + 1 && !context.isStopped(); depth++)
+            {
+                MoveEvaluator moveEvaluator = new MoveEvaluator(state, depth, context);
+                try
+                {
+                    moveEvaluator.invoke();
+                }
+                catch (SearchCancelledException e)
+                {
+                    return;
+                }
+                nodeCount += moveEvaluator.getNodeCount();
+            }
+        }
+    }
+}
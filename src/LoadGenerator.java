@@ -0,0 +1,251 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A client that opens many concurrent sessions on a {@link GameServer} and plays random moves in all of them, in
+ * order to measure how many sessions the server supports and how long clients wait for the computer's replies.
+ *
+ * The latency of a move is the time from sending it until the server has reported the resulting state, which
+ * includes the time the computer's search waited for a free slot in the server's search pool.
+ */
+public class LoadGenerator
+{
+    private final String host;
+    private final int port;
+    private final String difficulty;
+    private final long thinkTimeMillis;
+
+    private final List<long[]> latencies = new ArrayList<>();
+    private final AtomicInteger connectedSessions = new AtomicInteger();
+    private final AtomicInteger peakSessions = new AtomicInteger();
+    private final AtomicInteger failedSessions = new AtomicInteger();
+    private final AtomicLong gameCount = new AtomicLong();
+    private long elapsedNanos;
+
+    /**
+     * Creates a load generator
+     * @param host the host of the server
+     * @param port the port of the server
+     * @param difficulty the difficulty level of the computers the sessions play against
+     * @param thinkTimeMillis the time each session waits before each of its moves, in milliseconds
+     */
+    public LoadGenerator(String host, int port, String difficulty, long thinkTimeMillis)
+    {
+        this.host = host;
+        this.port = port;
+        this.difficulty = difficulty;
+        this.thinkTimeMillis = thinkTimeMillis;
+    }
+
+    /**
+     * Plays games on a server and reports the latencies of the moves.
+     * Usage: {@code LoadGenerator <sessions> <games per session> [<difficulty>] [--host <host>] [--port <port>]
+     * [--think <milliseconds>]}
+     */
+    public static void main(String[] args) throws InterruptedException
+    {
+        if (args.length < 2)
+        {
+            System.err.println("Usage: LoadGenerator <sessions> <games per session> [<difficulty>] [--host <host>] "
+                    + "[--port <port>] [--think <milliseconds>]");
+            System.exit(1);
+        }
+        String host = "localhost";
+        int port = GameServer.DEFAULT_PORT;
+        String difficulty = "4";
+        long thinkTimeMillis = 0;
+        for (int i = 2; i < args.length; i++)
+        {
+            switch (args[i])
+            {
+                case "--host":
+                    host = args[++i];
+                    break;
+                case "--port":
+                    port = Integer.parseInt(args[++i]);
+                    break;
+                case "--think":
+                    thinkTimeMillis = Long.parseLong(args[++i]);
+                    break;
+                default:
+                    difficulty = args[i];
+            }
+        }
+
+        LoadGenerator generator = new LoadGenerator(host, port, difficulty, thinkTimeMillis);
+        generator.run(Integer.parseInt(args[0]), Integer.parseInt(args[1]));
+        System.out.println(generator.getSummary());
+    }
+
+    /**
+     * Opens the specified number of sessions at once and waits until each has played its games
+     */
+    public void run(int sessions, int gamesPerSession) throws InterruptedException
+    {
+        long start = System.nanoTime();
+        ExecutorService executor = GameServer.newSessionExecutor("mancala-load");
+        for (int i = 0; i < sessions; i++)
+        {
+            executor.execute(() -> runSession(gamesPerSession));
+        }
+        executor.shutdown();
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        elapsedNanos = System.nanoTime() - start;
+    }
+
+    private void runSession(int games)
+    {
+        long[] sessionLatencies = new long[0];
+        int moveCount = 0;
+        boolean connected = false;
+        try (Socket socket = new Socket(host, port);
+             BufferedReader in = new BufferedReader(
+                     new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+             PrintWriter out = new PrintWriter(socket.getOutputStream(), true, StandardCharsets.US_ASCII))
+        {
+            socket.setTcpNoDelay(true);
+            peakSessions.accumulateAndGet(connectedSessions.incrementAndGet(), Math::max);
+            connected = true;
+            expect(in, "HELLO");
+
+            for (int game = 0; game < games; game++)
+            {
+                out.println("NEW " + difficulty + (game % 2 == 0 ? " FIRST" : " SECOND"));
+                String[] state = readState(in);
+                while (state[0].equals("STATE"))
+                {
+                    if (thinkTimeMillis > 0)
+                    {
+                        Thread.sleep(thinkTimeMillis);
+                    }
+                    long moveStart = System.nanoTime();
+                    out.println("MOVE " + chooseMove(state));
+                    state = readState(in);
+                    if (moveCount == sessionLatencies.length)
+                    {
+                        sessionLatencies = Arrays.copyOf(sessionLatencies, Math.max(moveCount * 2, 64));
+                    }
+                    sessionLatencies[moveCount++] = System.nanoTime() - moveStart;
+                }
+                gameCount.incrementAndGet();
+            }
+            out.println("QUIT");
+        }
+        catch (IOException | RuntimeException e)
+        {
+            failedSessions.incrementAndGet();
+            System.err.println("Session failed: " + e);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        finally
+        {
+            if (connected)
+            {
+                connectedSessions.decrementAndGet();
+            }
+        }
+        synchronized (latencies)
+        {
+            latencies.add(Arrays.copyOf(sessionLatencies, moveCount));
+        }
+    }
+
+    // Reads lines until the server reports the state or the end of the game, skipping the computer's moves
+    private static String[] readState(BufferedReader in) throws IOException
+    {
+        while (true)
+        {
+            String line = in.readLine();
+            if (line == null)
+            {
+                throw new IOException("Connection closed by the server");
+            }
+            String[] tokens = line.split(" ");
+            switch (tokens[0])
+            {
+                case "STATE":
+                case "END":
+                    return tokens;
+                case "AI":
+                    break;
+                default:
+                    throw new IOException("Unexpected reply: " + line);
+            }
+        }
+    }
+
+    private static void expect(BufferedReader in, String prefix) throws IOException
+    {
+        String line = in.readLine();
+        if (line == null || !line.startsWith(prefix))
+        {
+            throw new IOException("Expected " + prefix + " but got: " + line);
+        }
+    }
+
+    // Chooses a random move among the non-empty slots of the client, which follow the word YOU in the state
+    private static int chooseMove(String[] state)
+    {
+        List<Integer> moves = new ArrayList<>();
+        for (int slot = 1; slot <= GameState.SLOTS_PER_SIDE; slot++)
+        {
+            if (Integer.parseInt(state[1 + slot]) > 0)
+            {
+                moves.add(slot);
+            }
+        }
+        return moves.get(ThreadLocalRandom.current().nextInt(moves.size()));
+    }
+
+    /**
+     * Gets the sorted latencies of all moves played, in nanoseconds
+     */
+    public long[] getLatencies()
+    {
+        synchronized (latencies)
+        {
+            long[] all = latencies.stream().flatMapToLong(Arrays::stream).toArray();
+            Arrays.sort(all);
+            return all;
+        }
+    }
+
+    /**
+     * Gets a summary of the sessions, throughput and latency percentiles of the last run
+     */
+    public String getSummary()
+    {
+        long[] all = getLatencies();
+        return String.format("%d sessions at peak, %d failed, %d games, %d moves in %.1f s (%.0f moves/s)%n"
+                        + "move latency: p50 %.1f ms, p99 %.1f ms, max %.1f ms",
+                peakSessions.get(), failedSessions.get(), gameCount.get(), all.length, elapsedNanos / 1e9,
+                all.length * 1e9 / Math.max(elapsedNanos, 1),
+                getPercentile(all, 0.5) / 1e6, getPercentile(all, 0.99) / 1e6,
+                (all.length == 0 ? 0 : all[all.length - 1]) / 1e6);
+    }
+
+    private static long getPercentile(long[] sorted, double percentile)
+    {
+        if (sorted.length == 0)
+        {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(index, 0)];
+    }
+}
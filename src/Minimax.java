@@ -0,0 +1,234 @@
+import java.util.Random;
+
+/**
+ * A full-width minimax search without pruning, transposition table, move ordering or parallelism, which defines the
+ * fitness the search of {@link MoveEvaluator} must find.
+ *
+ * The moves are performed with {@link GamePlayer}, which defines the rules. Like the search, it extends the depth by
+ * a level for every move giving an extra turn, up to {@link MoveEvaluator#MAX_EXTENSIONS} times on any path, and
+ * evaluates the states at the horizon with a quiescence search over the moves that give an extra turn or capture
+ * stones, at most {@link MoveEvaluator#MAX_QUIESCENCE_DEPTH} moves deep.
+ */
+public class Minimax
+{
+    public static final int DEFAULT_POSITIONS = 100;
+
+    // The largest number of random moves leading to a position
+    private static final int MAX_RANDOM_PLIES = 30;
+
+    /**
+     * Searches random positions to every depth up to the specified one and reports the time taken.
+     * Usage: {@code Minimax <depth> [--positions <positions>] [--seed <seed>] [--verify]}. With {@code --verify}
+     * every position is also searched by {@link MoveEvaluator} without a transposition table, by
+     * {@link MoveEvaluator} with an empty transposition table and by an {@link IterativeDeepeningSearch}, whose
+     * aspiration windows also exercise the bounds stored in the table. The fitness and chosen move of each are
+     * checked against the full-width search, and the exit status is 1 if any of them differ.
+     */
+    public static void main(String[] args)
+    {
+        if (args.length == 0)
+        {
+            System.err.println("Usage: Minimax <depth> [--positions <positions>] [--seed <seed>] [--verify]");
+            System.exit(1);
+        }
+        int maxDepth = Integer.parseInt(args[0]);
+        int positions = DEFAULT_POSITIONS;
+        long seed = System.nanoTime();
+        boolean verify = false;
+        for (int i = 1; i < args.length; i++)
+        {
+            switch (args[i])
+            {
+                case "--positions":
+                    positions = Integer.parseInt(args[++i]);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(args[++i]);
+                    break;
+                case "--verify":
+                    verify = true;
+                    break;
+                default:
+                    System.err.println("Unknown argument: " + args[i]);
+                    System.exit(1);
+            }
+        }
+
+        SearchEngine engine = SearchEngine.getDefault();
+        EvaluationWeights weights = EvaluationWeights.getDefault();
+        TranspositionTable transpositionTable = verify
+                ? new TranspositionTable(TranspositionTable.DEFAULT_SIZE_MB)
+                : null;
+        boolean valid = true;
+        for (int depth = 1; depth <= maxDepth; depth++)
+        {
+            Random random = new Random(seed);
+            long elapsed = 0;
+            int mismatches = 0;
+            for (int i = 0; i < positions; i++)
+            {
+                GameState state = getRandomPosition(random);
+                long start = System.nanoTime();
+                int fitness = search(state, depth, 0, weights);
+                elapsed += System.nanoTime() - start;
+
+                if (verify)
+                {
+                    MoveEvaluator moveEvaluator = new MoveEvaluator(state, depth,
+                            new SearchContext(null).withEvaluationWeights(weights));
+                    engine.invoke(moveEvaluator);
+                    mismatches += check("alpha-beta", state, depth, fitness, moveEvaluator.getMaxChildFitness(),
+                            moveEvaluator.getBestChildMove(), weights);
+
+                    transpositionTable.clear();
+                    moveEvaluator = new MoveEvaluator(state, depth,
+                            new SearchContext(transpositionTable).withEvaluationWeights(weights));
+                    engine.invoke(moveEvaluator);
+                    mismatches += check("transposition table", state, depth, fitness,
+                            moveEvaluator.getMaxChildFitness(), moveEvaluator.getBestChildMove(), weights);
+
+                    transpositionTable.clear();
+                    IterativeDeepeningSearch search = new IterativeDeepeningSearch(
+                            new SearchContext(transpositionTable).withEvaluationWeights(weights), 0, depth);
+                    int move = search.search(state, engine);
+                    mismatches += check("iterative deepening", state, depth, fitness, search.getFitness(), move,
+                            weights);
+                }
+            }
+            System.out.printf("depth %2d: %,d positions in %8.1f ms%s%n", depth, positions, elapsed / 1e6,
+                    verify ? String.format(", %d mismatches", mismatches) : "");
+            valid &= mismatches == 0;
+        }
+        if (!valid)
+        {
+            System.exit(1);
+        }
+    }
+
+    // Checks the fitness and move found by a search against the fitness of the full-width search and returns the number
+    // of mismatches, 0 or 1
+    private static int check(String search, GameState state, int depth, int expectedFitness, int fitness, int move,
+                             EvaluationWeights weights)
+    {
+        if (fitness == expectedFitness && searchMove(state, move, depth, weights) == expectedFitness)
+        {
+            return 0;
+        }
+        System.out.printf("MISMATCH of the %s search at depth %d in %s: expected %d, found %d with move %d%n",
+                search, depth, BatchAnalyzer.formatPosition(state), expectedFitness, fitness, move);
+        return 1;
+    }
+
+    /**
+     * Computes the fitness of a state from the perspective of its active player
+     * @param depth the number of levels of moves to search
+     * @param extensions the number of times the search was extended on the path to the state
+     */
+    public static int search(GameState state, int depth, int extensions, EvaluationWeights weights)
+    {
+        if (depth == 0)
+        {
+            return quiesce(state, 0, weights);
+        }
+        int bestFitness = MoveEvaluator.MIN_FITNESS;
+        for (int move : GamePlayer.POSSIBLE_MOVES)
+        {
+            if (GamePlayer.isValidMove(state, move))
+            {
+                bestFitness = Math.max(bestFitness, searchMove(state, move, depth, extensions, weights));
+            }
+        }
+        return bestFitness;
+    }
+
+    /**
+     * Computes the fitness of a move in a state from the perspective of the player performing it
+     * @param depth the number of levels of moves to search, including the move
+     */
+    public static int searchMove(GameState state, int move, int depth, EvaluationWeights weights)
+    {
+        return searchMove(state, move, depth, 0, weights);
+    }
+
+    private static int searchMove(GameState state, int move, int depth, int extensions, EvaluationWeights weights)
+    {
+        GameState child = GamePlayer.performMove(state, move);
+        if (child.gameIsComplete())
+        {
+            return getFinalFitness(child, state.getActivePlayer());
+        }
+        if (child.getActivePlayer() != state.getActivePlayer())
+        {
+            return -search(child, depth - 1, extensions, weights);
+        }
+        return extensions < MoveEvaluator.MAX_EXTENSIONS
+                ? search(child, depth, extensions + 1, weights)
+                : search(child, depth - 1, extensions, weights);
+    }
+
+    // Evaluates a state at the horizon, where its active player may either stop or make a move giving an extra turn
+    // or capturing stones
+    private static int quiesce(GameState state, int quiescenceDepth, EvaluationWeights weights)
+    {
+        SearchBoard board = new SearchBoard(state, weights);
+        int bestFitness = board.evaluate();
+        if (quiescenceDepth == MoveEvaluator.MAX_QUIESCENCE_DEPTH)
+        {
+            return bestFitness;
+        }
+        for (int move : GamePlayer.POSSIBLE_MOVES)
+        {
+            if (!board.isValidMove(move) || !(board.isExtraMove(move) || board.isCapture(move)))
+            {
+                continue;
+            }
+            GameState child = GamePlayer.performMove(state, move);
+            int moveFitness;
+            if (child.gameIsComplete())
+            {
+                moveFitness = getFinalFitness(child, state.getActivePlayer());
+            }
+            else if (child.getActivePlayer() == state.getActivePlayer())
+            {
+                moveFitness = quiesce(child, quiescenceDepth + 1, weights);
+            }
+            else
+            {
+                moveFitness = -quiesce(child, quiescenceDepth + 1, weights);
+            }
+            bestFitness = Math.max(bestFitness, moveFitness);
+        }
+        return bestFitness;
+    }
+
+    // Gets the fitness of a completed game from the perspective of the specified player
+    private static int getFinalFitness(GameState state, PlayerRepresentation player)
+    {
+        Board board = state.getBoard();
+        int difference = board.getLeftScore() - board.getRightScore();
+        return EvaluationWeights.STONE * (player == PlayerRepresentation.LEFT ? difference : -difference);
+    }
+
+    // Performs random moves from the initial state, stopping before the game is complete
+    private static GameState getRandomPosition(Random random)
+    {
+        GameState state = GameState.getInitialState();
+        int plies = random.nextInt(MAX_RANDOM_PLIES + 1);
+        for (int i = 0; i < plies; i++)
+        {
+            int move;
+            do
+            {
+                move = 1 + random.nextInt(GameState.SLOTS_PER_SIDE);
+            }
+            while (!GamePlayer.isValidMove(state, move));
+            GameState child = GamePlayer.performMove(state, move);
+            if (child.gameIsComplete())
+            {
+                break;
+            }
+            state = child;
+        }
+        return state;
+    }
+}
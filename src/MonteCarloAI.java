@@ -0,0 +1,478 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A computer player that chooses its next move with Monte Carlo tree search.
+ *
+ * Instead of evaluating every combination of moves to a fixed depth, the player repeatedly plays the game out to the
+ * end with fast random moves (playouts) and grows a tree of the states it has visited, descending into the moves with
+ * the best upper confidence bound (UCT) so that promising moves are explored more. The move that was explored most
+ * is chosen. The strength of the player grows with the number of playouts rather than with an exponential search
+ * depth, so it scales linearly with the number of cores.
+ *
+ * The playouts are run by one task per thread of the engine's pool on a single shared tree. A thread descending
+ * through a node adds a visit to it immediately, before the playout's result is known (a virtual loss), so that
+ * concurrent threads spread out over different moves. The nodes of the tree are kept in preallocated arrays, and the
+ * part of the tree below the state the game reaches is kept for the next move. The arrays start out large enough for
+ * the playouts of two moves, or small for a time budget, and are doubled between moves whenever a move runs out of
+ * nodes, up to the node capacity of the player.
+ */
+public class MonteCarloAI implements Player
+{
+    public static final int DEFAULT_NODE_CAPACITY = 1 << 20;
+
+    // The initial number of nodes of a player with a time budget, whose number of playouts is not known in advance
+    private static final int INITIAL_NODE_CAPACITY = 1 << 15;
+
+    // The weight of exploring rarely visited moves against exploiting moves with a high win rate
+    private static final double EXPLORATION = Math.sqrt(2);
+
+    // A node is expanded the second time it is visited, so that nodes are not allocated for moves played only once
+    private static final int EXPANSION_VISITS = 2;
+
+    // The deepest path through the tree that is followed before starting a playout
+    private static final int MAX_TREE_DEPTH = 256;
+
+    // The number of moves after the previous root that are searched for the state of the next move
+    private static final int MAX_REUSE_PLIES = 8;
+
+    // Rewards are counted in half points so that draws can be counted as integers
+    private static final int WIN_REWARD = 2;
+    private static final int DRAW_REWARD = 1;
+
+    // The first child of a node that has not been expanded yet or is being expanded by another thread
+    private static final int UNEXPANDED = 0;
+    private static final int EXPANDING = -1;
+
+    private static final int ROOT = 0;
+
+    private final int playouts;
+    private final long timeBudgetMillis;
+    private final int nodeCapacity;
+    private final SearchEngine engine;
+
+    // The node pool: node i has the children firstChild[i] to firstChild[i] + childCount[i] - 1. The pool is
+    // swapped with the spare pool when the tree is compacted for the next move.
+    private NodePool nodes;
+    private NodePool spareNodes;
+
+    // The node of the previous tree each node of the new tree is copied from, used while compacting the tree
+    private int[] sourceNodes;
+
+    // The state at the root of the tree, or null before the first move
+    private SearchBoard rootBoard;
+
+    private volatile long lastPlayoutCount;
+
+    /**
+     * Creates a player that runs the specified number of playouts per move in the default engine
+     */
+    public MonteCarloAI(int playouts)
+    {
+        this(playouts, 0, DEFAULT_NODE_CAPACITY, SearchEngine.getDefault());
+    }
+
+    /**
+     * Creates a player that runs playouts until the specified amount of time has passed in the default engine
+     * @param timeBudgetMillis the wall-clock time the computer may take to determine each move, in milliseconds
+     */
+    public static MonteCarloAI withTimeBudget(long timeBudgetMillis)
+    {
+        return withTimeBudget(timeBudgetMillis, DEFAULT_NODE_CAPACITY, SearchEngine.getDefault());
+    }
+
+    /**
+     * Creates a player that runs playouts until the specified amount of time has passed
+     * @param timeBudgetMillis the wall-clock time the computer may take to determine each move, in milliseconds
+     * @param nodeCapacity the largest number of nodes the tree may hold
+     * @param engine the engine whose pool runs the playouts
+     */
+    public static MonteCarloAI withTimeBudget(long timeBudgetMillis, int nodeCapacity, SearchEngine engine)
+    {
+        return new MonteCarloAI(0, timeBudgetMillis, nodeCapacity, engine);
+    }
+
+    /**
+     * Creates a player
+     * @param playouts the number of playouts per move, or 0 to use the time budget
+     * @param timeBudgetMillis the wall-clock time the computer may take to determine each move, in milliseconds
+     * @param nodeCapacity the largest number of nodes the tree may hold, which are only allocated once they are needed
+     * @param engine the engine whose pool runs the playouts
+     */
+    public MonteCarloAI(int playouts, long timeBudgetMillis, int nodeCapacity, SearchEngine engine)
+    {
+        if (playouts <= 0 && timeBudgetMillis <= 0)
+        {
+            throw new IllegalArgumentException("Either the playouts or the time budget must be positive");
+        }
+        this.playouts = playouts;
+        this.timeBudgetMillis = timeBudgetMillis;
+        this.nodeCapacity = nodeCapacity;
+        this.engine = engine;
+        // Every playout expands at most one node, so the tree of a move holds the subtree kept from the previous move
+        // and at most one set of children per playout
+        int initialCapacity = playouts > 0
+                ? (int) Math.min(nodeCapacity, 2 * (1 + (long) GameState.SLOTS_PER_SIDE * playouts))
+                : Math.min(nodeCapacity, INITIAL_NODE_CAPACITY);
+        this.nodes = new NodePool(initialCapacity);
+        this.spareNodes = new NodePool(initialCapacity);
+        this.sourceNodes = new int[initialCapacity];
+    }
+
+    /**
+     * Runs playouts from the current state, reusing the tree of the previous move if it contains the state, and
+     * chooses the most explored move
+     * @param state the current state of the game
+     * @return the next move this player should perform
+     */
+    public int chooseNextMove(GameState state)
+    {
+        long deadline = timeBudgetMillis > 0 ? System.nanoTime() + timeBudgetMillis * 1_000_000 : Long.MAX_VALUE;
+        reuseTree(new SearchBoard(state));
+
+        AtomicLong remainingPlayouts = new AtomicLong(playouts > 0 ? playouts : Long.MAX_VALUE);
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for (int i = 0; i < engine.getParallelism(); i++)
+        {
+            tasks.add(engine.getPool().submit(() -> runPlayouts(remainingPlayouts, deadline)));
+        }
+        for (ForkJoinTask<?> task : tasks)
+        {
+            task.join();
+        }
+        lastPlayoutCount = nodes.visits.get(ROOT);
+
+        // The most visited move is the most reliable; its win rate may be high only because it was rarely tried
+        int bestMove = -1;
+        int bestVisits = -1;
+        int firstChild = nodes.firstChild.get(ROOT);
+        for (int child = firstChild; child > 0 && child < firstChild + nodes.childCount[ROOT]; child++)
+        {
+            if (nodes.visits.get(child) > bestVisits)
+            {
+                bestVisits = nodes.visits.get(child);
+                bestMove = nodes.move[child];
+            }
+        }
+        if (bestMove == -1)
+        {
+            // No playout completed, which only happens with a tiny time budget
+            int[] moves = new int[GameState.SLOTS_PER_SIDE];
+            rootBoard.generateMoves(moves);
+            bestMove = moves[0];
+        }
+        return bestMove;
+    }
+
+    /**
+     * Drops the tree of the previous game, so that the first move of the next one starts a new tree
+     */
+    public void newGame()
+    {
+        rootBoard = null;
+    }
+
+    /**
+     * Gets the number of playouts that passed through the root of the tree when the last move was chosen, including
+     * playouts kept from previous moves
+     */
+    public long getLastPlayoutCount()
+    {
+        return lastPlayoutCount;
+    }
+
+    // Makes the node of the previous tree representing the specified state the new root, copying its subtree into
+    // the spare pool, or starts a new tree if the state cannot be found
+    private void reuseTree(SearchBoard board)
+    {
+        int newRoot = rootBoard == null ? -1 : findNode(rootBoard, ROOT, board.getHash(), MAX_REUSE_PLIES);
+        // The spare pool must hold at least as many nodes as the current one, into which the previous move may have
+        // grown, and twice as many if the previous move ran out of nodes
+        int capacity = nodes.full ? (int) Math.min(nodeCapacity, 2L * nodes.capacity) : nodes.capacity;
+        if (spareNodes.capacity < capacity)
+        {
+            spareNodes = new NodePool(capacity);
+            sourceNodes = new int[capacity];
+        }
+        spareNodes.clear();
+        if (newRoot == -1)
+        {
+            spareNodes.allocate(1);
+        }
+        else
+        {
+            copySubtree(newRoot, spareNodes);
+        }
+        NodePool previousNodes = nodes;
+        nodes = spareNodes;
+        spareNodes = previousNodes;
+        rootBoard = board;
+    }
+
+    // Searches the expanded nodes at most the specified number of moves below the specified one for the node whose
+    // state has the specified hash
+    private int findNode(SearchBoard board, int node, long hash, int plies)
+    {
+        if (board.getHash() == hash)
+        {
+            return node;
+        }
+        int firstChild = nodes.firstChild.get(node);
+        if (plies == 0 || firstChild <= 0)
+        {
+            return -1;
+        }
+        for (int child = firstChild; child < firstChild + nodes.childCount[node]; child++)
+        {
+            board.makeMove(nodes.move[child]);
+            int found = findNode(board, child, hash, plies - 1);
+            board.unmakeMove();
+            if (found != -1)
+            {
+                return found;
+            }
+        }
+        return -1;
+    }
+
+    // Copies the subtree below the specified node into the target pool, with the node as the root
+    private void copySubtree(int root, NodePool target)
+    {
+        target.allocate(1);
+        target.copyStatistics(nodes, root, ROOT);
+        sourceNodes[ROOT] = root;
+
+        // Nodes are allocated in the target pool breadth first, so the target pool itself serves as the queue of
+        // nodes whose children remain to be copied, and the children of every node stay contiguous
+        for (int targetNode = ROOT; targetNode < target.size.get(); targetNode++)
+        {
+            int node = sourceNodes[targetNode];
+            int firstChild = nodes.firstChild.get(node);
+            if (firstChild <= 0)
+            {
+                continue;
+            }
+            int childCount = nodes.childCount[node];
+            int targetFirstChild = target.allocate(childCount);
+            for (int i = 0; i < childCount; i++)
+            {
+                target.copyStatistics(nodes, firstChild + i, targetFirstChild + i);
+                sourceNodes[targetFirstChild + i] = firstChild + i;
+            }
+            target.childCount[targetNode] = (byte) childCount;
+            target.firstChild.set(targetNode, targetFirstChild);
+        }
+    }
+
+    // Runs playouts in the current thread until the playouts are used up or the deadline has passed
+    private void runPlayouts(AtomicLong remainingPlayouts, long deadline)
+    {
+        SearchBoard board = rootBoard.copy();
+        int[] path = new int[MAX_TREE_DEPTH + 1];
+        PlayerRepresentation[] movers = new PlayerRepresentation[MAX_TREE_DEPTH + 1];
+        int[] moves = new int[GameState.SLOTS_PER_SIDE];
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        while (remainingPlayouts.getAndDecrement() > 0 && System.nanoTime() < deadline)
+        {
+            // Selection: descend to a leaf, adding a visit to every node on the way as a virtual loss
+            int node = ROOT;
+            int length = 0;
+            path[length] = node;
+            nodes.visits.incrementAndGet(node);
+            while (!board.isGameComplete() && length < MAX_TREE_DEPTH)
+            {
+                int firstChild = nodes.firstChild.get(node);
+                if (firstChild <= 0)
+                {
+                    if (firstChild == EXPANDING || nodes.visits.get(node) < EXPANSION_VISITS
+                            || (firstChild = expand(node, board, moves)) <= 0)
+                    {
+                        break;
+                    }
+                }
+                int child = selectChild(node, firstChild);
+                movers[length] = board.getActivePlayer();
+                board.makeMove(nodes.move[child]);
+                node = child;
+                path[++length] = node;
+                nodes.visits.incrementAndGet(node);
+            }
+
+            // Simulation: play the game out from the leaf
+            int depth = length;
+            while (!board.isGameComplete())
+            {
+                board.makeMove(choosePlayoutMove(board, moves, random));
+                depth++;
+            }
+            int leftAdvantage = board.getActivePlayer() == PlayerRepresentation.LEFT
+                    ? board.getScore() - board.getOpponentScore()
+                    : board.getOpponentScore() - board.getScore();
+
+            // Backpropagation: credit every node with the result for the player who moved into it
+            for (int i = 1; i <= length; i++)
+            {
+                int advantage = movers[i - 1] == PlayerRepresentation.LEFT ? leftAdvantage : -leftAdvantage;
+                if (advantage > 0)
+                {
+                    nodes.rewards.addAndGet(path[i], WIN_REWARD);
+                }
+                else if (advantage == 0)
+                {
+                    nodes.rewards.addAndGet(path[i], DRAW_REWARD);
+                }
+            }
+
+            for (int i = 0; i < depth; i++)
+            {
+                board.unmakeMove();
+            }
+        }
+    }
+
+    // Allocates the children of the specified node, unless another thread is already doing so or the pool is full,
+    // and returns the first of them
+    private int expand(int node, SearchBoard board, int[] moves)
+    {
+        if (!nodes.firstChild.compareAndSet(node, UNEXPANDED, EXPANDING))
+        {
+            return EXPANDING;
+        }
+        int moveCount = board.generateMoves(moves);
+        int firstChild = nodes.allocate(moveCount);
+        if (firstChild == -1)
+        {
+            nodes.firstChild.set(node, UNEXPANDED);
+            return UNEXPANDED;
+        }
+        for (int i = 0; i < moveCount; i++)
+        {
+            nodes.move[firstChild + i] = (byte) moves[i];
+        }
+        nodes.childCount[node] = (byte) moveCount;
+        // Setting the first child publishes the children to the other threads
+        nodes.firstChild.set(node, firstChild);
+        return firstChild;
+    }
+
+    // Selects the child with the highest upper confidence bound, trying every child once first
+    private int selectChild(int node, int firstChild)
+    {
+        double logVisits = Math.log(Math.max(nodes.visits.get(node), 1));
+        int bestChild = firstChild;
+        double bestBound = Double.NEGATIVE_INFINITY;
+        for (int child = firstChild; child < firstChild + nodes.childCount[node]; child++)
+        {
+            int visits = nodes.visits.get(child);
+            if (visits == 0)
+            {
+                return child;
+            }
+            double winRate = nodes.rewards.get(child) / (double) (WIN_REWARD * visits);
+            double bound = winRate + EXPLORATION * Math.sqrt(logVisits / visits);
+            if (bound > bestBound)
+            {
+                bestBound = bound;
+                bestChild = child;
+            }
+        }
+        return bestChild;
+    }
+
+    // Playouts take a move giving an extra turn if there is one, often take the largest capture, and otherwise move
+    // at random
+    private static int choosePlayoutMove(SearchBoard board, int[] moves, ThreadLocalRandom random)
+    {
+        int moveCount = board.generateMoves(moves);
+        int bestCapture = -1;
+        int bestCapturedStones = 0;
+        for (int i = 0; i < moveCount; i++)
+        {
+            if (board.isExtraMove(moves[i]))
+            {
+                return moves[i];
+            }
+            int capturedStones = board.getCapturedStones(moves[i]);
+            if (capturedStones > bestCapturedStones)
+            {
+                bestCapturedStones = capturedStones;
+                bestCapture = moves[i];
+            }
+        }
+        if (bestCapture != -1 && random.nextBoolean())
+        {
+            return bestCapture;
+        }
+        return moves[random.nextInt(moveCount)];
+    }
+
+    // The arrays holding the nodes of a tree
+    private static class NodePool
+    {
+        private final int capacity;
+        private final AtomicIntegerArray firstChild;
+        private final byte[] childCount;
+        private final byte[] move;
+        private final AtomicIntegerArray visits;
+        private final AtomicIntegerArray rewards;
+        private final AtomicInteger size = new AtomicInteger();
+        // Whether an allocation failed since the pool was cleared, which is read once the playouts are joined
+        private boolean full;
+
+        private NodePool(int capacity)
+        {
+            this.capacity = capacity;
+            this.firstChild = new AtomicIntegerArray(capacity);
+            this.childCount = new byte[capacity];
+            this.move = new byte[capacity];
+            this.visits = new AtomicIntegerArray(capacity);
+            this.rewards = new AtomicIntegerArray(capacity);
+        }
+
+        // Allocates the specified number of contiguous nodes and returns the first of them, or -1 if the pool is full
+        private int allocate(int count)
+        {
+            while (true)
+            {
+                int first = size.get();
+                if (first + count > capacity)
+                {
+                    full = true;
+                    return -1;
+                }
+                if (size.compareAndSet(first, first + count))
+                {
+                    return first;
+                }
+            }
+        }
+
+        private void copyStatistics(NodePool source, int sourceNode, int targetNode)
+        {
+            move[targetNode] = source.move[sourceNode];
+            visits.set(targetNode, source.visits.get(sourceNode));
+            rewards.set(targetNode, source.rewards.get(sourceNode));
+        }
+
+        private void clear()
+        {
+            int used = size.get();
+            for (int i = 0; i < used; i++)
+            {
+                firstChild.set(i, UNEXPANDED);
+                childCount[i] = 0;
+                move[i] = 0;
+                visits.set(i, 0);
+                rewards.set(i, 0);
+            }
+            size.set(0);
+            full = false;
+        }
+    }
+}
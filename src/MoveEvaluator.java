@@ -1,22 +1,102 @@
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Stack;
 import java.util.concurrent.RecursiveAction;
 
 /**
  * A class that uses a fork/join structure to recursively evaluate the state space
- * of possible moves to find the best move
+ * of possible moves to find the best move.
+ *
+ * The state space is searched with negamax alpha-beta pruning. The first child move of every node is evaluated
+ * directly in the current thread to establish a bound, after which the remaining child moves are forked with that
+ * bound so that moves which cannot change the result are cut off.
+ *
+ * Each evaluator walks its part of the state space on its own {@link SearchBoard}, making and unmaking moves in
+ * place. Only nodes far enough from the horizon and with enough stones left fork their remaining child moves, each
+ * with a copy of the board, and only while the thread does not already have a surplus of queued tasks. Everything
+ * else is searched sequentially without allocating, as is the whole state space if the
+ * {@linkplain SearchContext#isSequential() context is sequential}. The thresholds are set by the context. The moves
+ * of every node are sorted by a {@link MoveOrdering} so that the moves most likely to cause a cutoff are evaluated
+ * first, and states with few stones left are looked up in an {@link EndgameDatabase} if the search has one.
+ *
+ * Moves that give an extra turn extend the search by a level, up to {@link #MAX_EXTENSIONS} times on any path. At
+ * the horizon a quiescence search follows the moves that give an extra turn or capture stones, so that states are not
+ * evaluated in the middle of such a sequence, while the active player may always stop at the current evaluation
+ * instead (stand pat). The quiescence search goes at most {@link #MAX_QUIESCENCE_DEPTH} moves deep. The state the
+ * fitness of a horizon state comes from can be traced through a {@link LeafRecorder}.
+ *
+ * When a transposition table is provided, the results of evaluated states are shared between all the evaluators of
+ * the search so that states reached through different orders of moves are only evaluated once. A search is stopped
+ * by throwing a {@link SearchCancelledException} once its deadline has passed or it has been cancelled through its
+ * {@link CancellationToken}. Every evaluator checks this before it starts and then every
+ * {@value #STOP_CHECK_INTERVAL} states, and an evaluator that is stopped cancels the subtasks it forked that have not
+ * started yet, so that a whole search stops within a fraction of a millisecond.
  */
 public class MoveEvaluator extends RecursiveAction
 {
+    private static final long serialVersionUID = 1L;
+
+    // The fitness bounds are symmetric so that negating a bound of the search window never overflows
+    public static final int MAX_FITNESS = Integer.MAX_VALUE;
+    public static final int MIN_FITNESS = -MAX_FITNESS;
+
+    /**
+     * The largest number of times the search is extended by a level for a move giving an extra turn on any path
+     */
+    public static final int MAX_EXTENSIONS = 8;
+
+    /**
+     * The largest number of moves the quiescence search makes below the horizon
+     */
+    public static final int MAX_QUIESCENCE_DEPTH = 8;
+
+    /**
+     * Nodes with fewer levels of moves left to evaluate than this are searched sequentially by default, since the
+     * cost of forking their child moves would exceed the cost of evaluating them
+     */
+    public static final int DEFAULT_SEQUENTIAL_THRESHOLD = 3;
+
+    /**
+     * The number of tasks a thread may have queued beyond what other threads are likely to steal before its nodes
+     * are searched sequentially, by default
+     */
+    public static final int DEFAULT_MAX_SURPLUS_TASKS = 1;
+
+    // Nodes with fewer stones left in the slots than this are searched sequentially, since the game ends within a few
+    // moves and their subtrees are small whatever the depth
+    private static final int MIN_FORK_STONES = 6;
+
+    // Whether the search is stopped is checked whenever the number of states visited by an evaluator is a multiple
+    // of this
+    private static final int STOP_CHECK_INTERVAL = 1024;
+
+    private final SearchBoard board;
     private int depth;
+    private final int ply;
+
+    // The number of times the search was extended on the path from the root to the current state
+    private int extensions;
+
+    // The search window, from the perspective of the player performing this evaluator's move
+    private int alpha = MIN_FITNESS;
+    private int beta = MAX_FITNESS;
 
-    private GameState parentState;
-    private GameState state;
     private int move = -1;
 
     private int bestChildMove = -1;
-    private int maxChildFitness = Integer.MIN_VALUE;
+    private int fitness = MIN_FITNESS;
+
+    private long nodeCount;
+    private long forkCount;
+
+    private final SearchContext context;
+    private final TranspositionTable transpositionTable;
+    private final MoveOrdering moveOrdering;
+    private final EndgameDatabase endgameDatabase;
+    private LeafRecorder leafRecorder;
+
+    // The valid moves of every level of this evaluator's part of the search and their ranks, reused between nodes
+    private int[][] moveLists = new int[0][];
+    private int[][] rankLists = new int[0][];
 
     /**
      * Constructor to build the root move evaluator
@@ -25,21 +105,95 @@ public class MoveEvaluator extends RecursiveAction
      */
     public MoveEvaluator(GameState state, int depth)
     {
-        this.state = state;
+        this(state, depth, new SearchContext(null));
+    }
+
+    /**
+     * Constructor to build the root move evaluator
+     * @param state the state to evaluate
+     * @param depth the number of levels of moves to evaluate
+     * @param context the structures and limits shared by all evaluators of the search
+     */
+    public MoveEvaluator(GameState state, int depth, SearchContext context)
+    {
+        this(state, depth, MIN_FITNESS, MAX_FITNESS, context);
+    }
+
+    /**
+     * Constructor to build the root move evaluator with a narrowed search window. If the fitness of the state lies
+     * outside of the window, the evaluator only determines a bound of it.
+     * @param state the state to evaluate
+     * @param depth the number of levels of moves to evaluate
+     * @param alpha the lower bound of the search window
+     * @param beta the upper bound of the search window
+     * @param context the structures and limits shared by all evaluators of the search
+     */
+    public MoveEvaluator(GameState state, int depth, int alpha, int beta, SearchContext context)
+    {
+        this(state, depth, alpha, beta, 0, context);
+    }
+
+    /**
+     * Constructor to build the root move evaluator of a subtree of a larger search, such as a distributed search,
+     * so that the subtree is extended exactly as it would be within the larger search
+     * @param state the state to evaluate
+     * @param depth the number of levels of moves to evaluate
+     * @param alpha the lower bound of the search window
+     * @param beta the upper bound of the search window
+     * @param extensions the number of times the larger search was extended on the path to the state
+     * @param context the structures and limits shared by all evaluators of the search
+     */
+    public MoveEvaluator(GameState state, int depth, int alpha, int beta, int extensions, SearchContext context)
+    {
+        this.board = new SearchBoard(state, context.getEvaluationWeights());
         this.depth = depth;
+        this.ply = 0;
+        this.extensions = extensions;
+        this.alpha = alpha;
+        this.beta = beta;
+        this.context = context;
+        this.transpositionTable = context.getTranspositionTable();
+        this.moveOrdering = context.getMoveOrdering();
+        this.endgameDatabase = context.getEndgameDatabase();
     }
 
     /**
      * Constructor to build a move evaluator
-     * @param parentState the state of the parent
+     * @param board a copy of the board before the move is performed
      * @param move the move to evaluate
-     * @param depth the number of levels of moves to evaluate
+     * @param depth the number of levels of moves to evaluate after the move
+     * @param ply the number of moves between the root and the board
+     * @param alpha the lower bound of the search window, from the perspective of the player performing the move
+     * @param beta the upper bound of the search window, from the perspective of the player performing the move
+     * @param extensions the number of times the search was extended on the path from the root to the board
      */
-    public MoveEvaluator(GameState parentState, int move, int depth)
+    private MoveEvaluator(SearchBoard board, int move, int depth, int ply, int alpha, int beta, int extensions,
+                          SearchContext context)
     {
-        this.parentState = parentState;
+        this.board = board;
         this.move = move;
         this.depth = depth;
+        this.ply = ply;
+        this.extensions = extensions;
+        this.alpha = alpha;
+        this.beta = beta;
+        this.context = context;
+        this.transpositionTable = context.getTranspositionTable();
+        this.moveOrdering = context.getMoveOrdering();
+        this.endgameDatabase = context.getEndgameDatabase();
+    }
+
+    /**
+     * Sets the recorder tracing the quiescence search of this evaluator, which must evaluate a state at the horizon
+     * (depth 0) so that its quiescence search runs in a single thread
+     */
+    public void setLeafRecorder(LeafRecorder leafRecorder)
+    {
+        if (depth != 0 || !isRoot())
+        {
+            throw new IllegalStateException("Only the quiescence search of a state at the horizon can be recorded");
+        }
+        this.leafRecorder = leafRecorder;
     }
 
     public int getBestChildMove()
@@ -52,127 +206,464 @@ public class MoveEvaluator extends RecursiveAction
         return move;
     }
 
+    /**
+     * Gets the fitness of the best child move from the perspective of the active player of the evaluated state
+     */
+    public int getMaxChildFitness()
+    {
+        return fitness;
+    }
+
+    /**
+     * Gets the number of states visited by this evaluator and all of its completed subtasks
+     */
+    public long getNodeCount()
+    {
+        return nodeCount;
+    }
+
+    /**
+     * Gets the number of subtasks forked by this evaluator and all of its completed subtasks
+     */
+    public long getForkCount()
+    {
+        return forkCount;
+    }
+
     /**
      * Computes the fitness of the specified move either directly, if depth is set to 0, or recursively, if otherwise.
      */
     public void compute()
     {
-        if (!isRoot())
+        if (context.isStopped())
+        {
+            throw new SearchCancelledException();
+        }
+        if (isRoot())
+        {
+            nodeCount = 1;
+            fitness = evaluateState(depth, alpha, beta, ply);
+        }
+        else
+        {
+            fitness = evaluateMove(move, depth, alpha, beta, ply);
+        }
+    }
+
+    // Decides whether the remaining child moves of the current node are forked. Forking only pays off for subtrees
+    // large enough to outweigh the cost of the tasks, and only while the other threads may run out of work: once this
+    // thread has more tasks queued than are likely to be stolen, further tasks would only be run by this thread itself.
+    private boolean shouldFork(int depth)
+    {
+        return !context.isSequential()
+                && depth >= context.getSequentialThreshold()
+                && board.getStonesOnBoard() >= MIN_FORK_STONES
+                && getSurplusQueuedTaskCount() <= context.getMaxSurplusTasks();
+    }
+
+    private boolean isRoot()
+    {
+        return move == -1;
+    }
+
+    // Performs the specified move on the board and calculates its fitness from the perspective of the player
+    // performing it, taking the move back afterwards
+    private int evaluateMove(int move, int depth, int alpha, int beta, int ply)
+    {
+        if (++nodeCount % STOP_CHECK_INTERVAL == 0 && context.isStopped())
+        {
+            throw new SearchCancelledException();
+        }
+        PlayerRepresentation activePlayer = board.getActivePlayer();
+        board.makeMove(move);
+
+        int moveFitness;
+        if (board.isGameComplete())
+        {
+            moveFitness = calculateFitness();
+        }
+        else if (board.getActivePlayer() == activePlayer)
+        {
+            // We increment depth if we have an extra move to prevent bias when evaluating the fitness of
+            // paths involving extra moves, up to a limit so that long chains of extra moves cannot blow up the search
+            if (extensions < MAX_EXTENSIONS)
+            {
+                extensions++;
+                moveFitness = evaluateState(depth + 1, alpha, beta, ply + 1);
+                extensions--;
+            }
+            else
+            {
+                moveFitness = evaluateState(depth, alpha, beta, ply + 1);
+            }
+        }
+        else
+        {
+            // The fitness of the opponent's best reply is the inverse of the fitness of the move
+            moveFitness = -evaluateState(depth, -beta, -alpha, ply + 1);
+        }
+
+        board.unmakeMove();
+        return moveFitness;
+    }
+
+    // Calculates the fitness of the current state of the board from the perspective of its active player, either
+    // with a quiescence search, if depth is 0, or recursively by finding the best child move
+    private int evaluateState(int depth, int alpha, int beta, int ply)
+    {
+        // The exact fitness of states with few stones left is known
+        if (ply > 0 && endgameDatabase != null && endgameDatabase.contains(board))
+        {
+            return getEndgameFitness();
+        }
+
+        if (depth == 0)
         {
-            this.state = GamePlayer.performMove(parentState, move);
+            return quiesce(alpha, beta, ply, 0);
+        }
 
-            if (state.gameIsComplete())
+        long hash = board.getHash();
+        int transpositionTableMove = -1;
+        if (transpositionTable != null)
+        {
+            long entry = transpositionTable.probe(hash);
+            if (ply > 0 && isSettledByEntry(entry, getDraft(depth), alpha, beta))
+            {
+                return TranspositionTable.getScore(entry);
+            }
+            if (entry != 0)
             {
-                updateBestMove(move, calculateFitness());
-                return;
+                transpositionTableMove = TranspositionTable.getMove(entry);
             }
+        }
 
-            // We increment depth if we have an extra move to prevent bias when evaluating the fitness of
-            // paths involving extra moves
-            if (hasExtraMove())
+        int originalAlpha = alpha;
+        int bestFitness = MIN_FITNESS;
+        int bestMove = -1;
+
+        int[] moves = getMoveList(ply);
+        int moveCount = generateOrderedMoves(moves, getRankList(ply), transpositionTableMove, ply);
+        for (int i = 0; i < moveCount; i++)
+        {
+            if (i > 0 && shouldFork(depth))
             {
-                depth++;
+                // Once the first child move has established a bound, the remaining ones are evaluated in parallel
+                MoveEvaluator subtask = evaluateChildMovesInParallel(moves, i, moveCount, depth, alpha, beta, ply);
+                if (subtask.fitness > bestFitness)
+                {
+                    bestFitness = subtask.fitness;
+                    bestMove = subtask.move;
+                }
+                break;
             }
 
-            // Evaluate the fitness of the move directly
-            if (depth == 0)
+            int childFitness = evaluateMove(moves[i], depth - 1, alpha, beta, ply);
+            if (childFitness > bestFitness)
             {
-                updateBestMove(move, calculateFitness());
-                return;
+                bestFitness = childFitness;
+                bestMove = moves[i];
+                if (bestFitness > alpha)
+                {
+                    alpha = bestFitness;
+                }
+                if (alpha >= beta)
+                {
+                    moveOrdering.recordCutoff(board, bestMove, i, depth, ply);
+                    break;
+                }
             }
         }
 
-        // Evaluate fitness of the move recursively by finding the best child move
-        Stack<MoveEvaluator> subtasks = evaluateChildMoves();
-        while (!subtasks.empty())
+        if (ply == 0)
         {
-            MoveEvaluator subtask = subtasks.pop();
-            subtask.join();
-            int subtaskFitness = calculateFitness(subtask);
-            updateBestMove(subtask.move, subtaskFitness);
+            bestChildMove = bestMove;
         }
+        if (transpositionTable != null)
+        {
+            int bound = TranspositionTable.EXACT;
+            if (bestFitness <= originalAlpha)
+            {
+                bound = TranspositionTable.UPPER_BOUND;
+            }
+            else if (bestFitness >= beta)
+            {
+                bound = TranspositionTable.LOWER_BOUND;
+            }
+            transpositionTable.store(hash, getDraft(depth), bound, bestFitness, bestMove);
+        }
+        return bestFitness;
     }
 
-    private boolean isRoot()
+    // Calculates the fitness of the current state of the board from the perspective of its active player by searching
+    // only the moves that give an extra turn or capture stones, all of which the active player may decline by
+    // standing pat at the evaluation of the state
+    private int quiesce(int alpha, int beta, int ply, int quiescenceDepth)
     {
-        return parentState == null;
-    }
+        int bestFitness = calculateFitness();
+        if (leafRecorder != null)
+        {
+            leafRecorder.recordEvaluation(board, quiescenceDepth);
+        }
+        if (bestFitness >= beta || quiescenceDepth == MAX_QUIESCENCE_DEPTH)
+        {
+            return bestFitness;
+        }
+        if (bestFitness > alpha)
+        {
+            alpha = bestFitness;
+        }
 
-    // If the active player did not change from the parent state this will indicate the existence of an extra move
-    private boolean hasExtraMove()
-    {
-        return parentState.getActivePlayer().equals(state.getActivePlayer());
+        // Extra moves first, then captures, which mirrors the move ordering of the full search
+        for (int pass = 0; pass < 2; pass++)
+        {
+            for (int slot = 1; slot <= GameState.SLOTS_PER_SIDE; slot++)
+            {
+                if (!board.isValidMove(slot))
+                {
+                    continue;
+                }
+                boolean tactical = pass == 0
+                        ? board.isExtraMove(slot)
+                        : !board.isExtraMove(slot) && board.isCapture(slot);
+                if (!tactical)
+                {
+                    continue;
+                }
+                int childFitness = quiesceMove(slot, alpha, beta, ply, quiescenceDepth);
+                if (childFitness > bestFitness)
+                {
+                    bestFitness = childFitness;
+                    if (leafRecorder != null)
+                    {
+                        leafRecorder.recordBestMove(quiescenceDepth);
+                    }
+                    if (bestFitness > alpha)
+                    {
+                        alpha = bestFitness;
+                    }
+                    if (alpha >= beta)
+                    {
+                        return bestFitness;
+                    }
+                }
+            }
+        }
+        return bestFitness;
     }
 
-    // Recursively evaluates all child moves, forking all but the last one,
-    // which will be evaluated directly in this thread
-    private Stack<MoveEvaluator> evaluateChildMoves()
+    // Performs a move of the quiescence search and calculates its fitness from the perspective of the player
+    // performing it, taking the move back afterwards
+    private int quiesceMove(int move, int alpha, int beta, int ply, int quiescenceDepth)
     {
-        Stack<MoveEvaluator> subtasks = new Stack<>();
-        List<Integer> validChildMoves = getValidChildMoves();
-        for (int i = 0; i < validChildMoves.size() - 1; i++)
+        if (++nodeCount % STOP_CHECK_INTERVAL == 0 && context.isStopped())
+        {
+            throw new SearchCancelledException();
+        }
+        PlayerRepresentation activePlayer = board.getActivePlayer();
+        board.makeMove(move);
+
+        int moveFitness;
+        if (board.isGameComplete())
+        {
+            moveFitness = calculateFitness();
+            if (leafRecorder != null)
+            {
+                leafRecorder.recordOutcome(quiescenceDepth + 1, moveFitness / EvaluationWeights.STONE);
+            }
+        }
+        else if (endgameDatabase != null && endgameDatabase.contains(board))
+        {
+            moveFitness = board.getActivePlayer() == activePlayer ? getEndgameFitness() : -getEndgameFitness();
+            if (leafRecorder != null)
+            {
+                leafRecorder.recordOutcome(quiescenceDepth + 1, moveFitness / EvaluationWeights.STONE);
+            }
+        }
+        else if (board.getActivePlayer() == activePlayer)
+        {
+            moveFitness = quiesce(alpha, beta, ply + 1, quiescenceDepth + 1);
+        }
+        else
         {
-            subtasks.push(evaluateSingleChildMove(validChildMoves.get(i), true));
+            moveFitness = -quiesce(-beta, -alpha, ply + 1, quiescenceDepth + 1);
+            if (leafRecorder != null)
+            {
+                leafRecorder.recordTurnPassed(quiescenceDepth + 1);
+            }
         }
-        //Evaluate the last move directly instead of creating a new thread to do that
-        int lastValidMove = validChildMoves.get(validChildMoves.size() - 1);
-        subtasks.push(evaluateSingleChildMove(lastValidMove, false));
-        return subtasks;
+
+        board.unmakeMove();
+        return moveFitness;
+    }
+
+    // Gets the draft of a search of the current state to the specified depth, which the transposition table stores
+    // with its result. The extensions the search may still make are folded in below the depth, since the fitness of a
+    // state depends on both: a result only settles a search of a lower depth, or of the same depth with no more
+    // extensions left, so that a state reached by a path that used up more extensions cannot settle it.
+    private int getDraft(int depth)
+    {
+        return depth * (MAX_EXTENSIONS + 1) + MAX_EXTENSIONS - extensions;
     }
 
-    // Recursively evaluates a single child move
-    private MoveEvaluator evaluateSingleChildMove(int slot, boolean fork)
+    // Returns true if a previous result for this state was evaluated with at least the specified draft and its bound
+    // settles the fitness within the current search window
+    private static boolean isSettledByEntry(long entry, int draft, int alpha, int beta)
     {
-        MoveEvaluator moveEvaluator = new MoveEvaluator(state, slot, depth - 1);
-        if (fork)
+        if (entry == 0 || TranspositionTable.getDepth(entry) < draft)
         {
-            moveEvaluator.fork();
+            return false;
         }
-        else
+        int score = TranspositionTable.getScore(entry);
+        int bound = TranspositionTable.getBound(entry);
+        return bound == TranspositionTable.EXACT
+                || (bound == TranspositionTable.LOWER_BOUND && score >= beta)
+                || (bound == TranspositionTable.UPPER_BOUND && score <= alpha);
+    }
+
+    // Writes the valid moves of the board into the specified array, from the most to the least promising, and returns
+    // their number. Moves of equal rank are visited from the last valid move to the first so that, without any other
+    // information, ties between equally fit moves are resolved the same way as by an exhaustive search.
+    private int generateOrderedMoves(int[] moves, int[] ranks, int transpositionTableMove, int ply)
+    {
+        int moveCount = board.generateMoves(moves);
+        for (int i = 0, j = moveCount - 1; i < j; i++, j--)
         {
-            moveEvaluator.invoke();
+            int move = moves[i];
+            moves[i] = moves[j];
+            moves[j] = move;
         }
-        return moveEvaluator;
+        moveOrdering.sort(board, moves, ranks, moveCount, transpositionTableMove, ply);
+        return moveCount;
     }
 
-    private List<Integer> getValidChildMoves()
+    // Forks the child moves from the specified index to the last one, each on its own copy of the board, and returns
+    // the subtask holding the best of them. Outstanding subtasks are cancelled as soon as one of them causes a cutoff
+    // or the search is stopped.
+    private MoveEvaluator evaluateChildMovesInParallel(int[] moves, int firstIndex, int moveCount, int depth,
+                                                      int alpha, int beta, int ply)
     {
-        List<Integer> validMoves = new ArrayList<>();
-        for (int i = 0; i < GamePlayer.POSSIBLE_MOVES.size(); i++)
+        List<MoveEvaluator> subtasks = new ArrayList<>();
+        for (int i = firstIndex; i < moveCount; i++)
+        {
+            MoveEvaluator subtask = new MoveEvaluator(board.copy(), moves[i], depth - 1, ply, alpha, beta,
+                    extensions, context);
+            subtask.fork();
+            subtasks.add(subtask);
+            forkCount++;
+        }
+
+        MoveEvaluator bestSubtask = null;
+        for (int i = 0; i < subtasks.size(); i++)
         {
-            int move = GamePlayer.POSSIBLE_MOVES.get(i);
-            if (GamePlayer.isValidMove(state, move))
+            MoveEvaluator subtask = subtasks.get(i);
+            try
+            {
+                subtask.join();
+            }
+            catch (SearchCancelledException e)
+            {
+                // The whole search is stopping, so the subtasks that have not started yet are not run at all
+                cancelSubtasks(subtasks, i + 1);
+                throw e;
+            }
+            nodeCount += subtask.nodeCount;
+            forkCount += subtask.forkCount;
+            if (bestSubtask == null || subtask.fitness > bestSubtask.fitness)
+            {
+                bestSubtask = subtask;
+            }
+            if (subtask.fitness >= beta)
             {
-                validMoves.add(move);
+                moveOrdering.recordCutoff(board, subtask.move, firstIndex + i, depth, ply);
+                cancelSubtasks(subtasks, i + 1);
+                break;
             }
         }
-        return validMoves;
+        return bestSubtask;
     }
 
-    // Calculates the fitness value of the move directly by comparing the active player's score with the opponent's
-    // score after the move has been completed
-    private int calculateFitness()
+    private static void cancelSubtasks(List<MoveEvaluator> subtasks, int fromIndex)
     {
-        return state.getScore() - state.getOpponentScore();
+        for (int i = fromIndex; i < subtasks.size(); i++)
+        {
+            subtasks.get(i).cancel(false);
+        }
     }
 
-    // Gets the fitness value of the specified subtask, taking the inverse of the value if the subtask
-    // represents the fitness from the opponent player's perspective
-    private int calculateFitness(MoveEvaluator subtask)
+    private int[] getMoveList(int ply)
     {
-        if (state.getActivePlayer() != subtask.state.getActivePlayer())
+        int level = ply - this.ply;
+        if (level >= moveLists.length)
         {
-            return -subtask.maxChildFitness;
+            int levels = Math.max(level + 1, moveLists.length * 2);
+            moveLists = growLists(moveLists, levels);
+            rankLists = growLists(rankLists, levels);
         }
-        return subtask.maxChildFitness;
+        return moveLists[level];
+    }
+
+    private int[] getRankList(int ply)
+    {
+        return rankLists[ply - this.ply];
     }
 
-    private void updateBestMove(int move, int fitness)
+    private static int[][] growLists(int[][] lists, int levels)
     {
-        if (fitness > maxChildFitness)
+        int[][] newLists = new int[levels][];
+        System.arraycopy(lists, 0, newLists, 0, lists.length);
+        for (int i = lists.length; i < levels; i++)
         {
-            maxChildFitness = fitness;
-            bestChildMove = move;
+            newLists[i] = new int[GameState.SLOTS_PER_SIDE];
         }
+        return newLists;
+    }
+
+    // Calculates the exact fitness of a state contained in the endgame database
+    private int getEndgameFitness()
+    {
+        return EvaluationWeights.STONE * (board.getScore() - board.getOpponentScore() + endgameDatabase.probe(board));
+    }
+
+    // Calculates the fitness value of the state directly, exactly from the scores once the game is complete and with
+    // the board's evaluation of both sides otherwise
+    private int calculateFitness()
+    {
+        if (board.isGameComplete())
+        {
+            return EvaluationWeights.STONE * (board.getScore() - board.getOpponentScore());
+        }
+        return board.evaluate();
+    }
+
+    /**
+     * Traces the quiescence search of an evaluator to the state its fitness comes from. Levels count the moves made
+     * from the state at the horizon, which is at level 0, and the recorder keeps a leaf for every level: the state the
+     * fitness of the node at that level comes from, or the known outcome it leads to.
+     */
+    public interface LeafRecorder
+    {
+        /**
+         * Sets the leaf of a level to the current state of the board, which its active player may stop at
+         */
+        void recordEvaluation(SearchBoard board, int level);
+
+        /**
+         * Sets the leaf of a level to a completed game, or a state whose outcome is known from the endgame database
+         * @param scoreDifference the final difference between the scores, from the perspective of the player making
+         *                        the move that leads to the level
+         */
+        void recordOutcome(int level, int scoreDifference);
+
+        /**
+         * Reports that the move leading to a level passed the turn, so that its leaf is now seen from the perspective
+         * of the player making that move
+         */
+        void recordTurnPassed(int level);
+
+        /**
+         * Sets the leaf of a level to the leaf of the next level, since the move just searched is the best one of the
+         * node so far
+         */
+        void recordBestMove(int level);
     }
 }
@@ -0,0 +1,176 @@
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Orders the valid moves of a state so that the moves most likely to be the best are evaluated first, which lets an
+ * alpha-beta search cut off the remaining moves as early as possible.
+ *
+ * Moves are tried in the following order: the best move remembered by the transposition table, moves that give an
+ * extra turn, captures (largest first), the killer moves of the current level, and finally all other moves ranked by
+ * how often they caused a cutoff anywhere in the search (the history heuristic).
+ *
+ * An ordering is shared by all the move evaluators of a search. The killer and history tables are updated without
+ * synchronization: a lost update only makes the ordering slightly worse and never changes the result of a search.
+ */
+public class MoveOrdering
+{
+    // Killer moves are only remembered for this many levels below the root
+    private static final int MAX_PLY = 128;
+    private static final int KILLERS_PER_PLY = 2;
+
+    private static final int TRANSPOSITION_TABLE_MOVE_RANK = 1_000_000;
+    private static final int EXTRA_MOVE_RANK = 900_000;
+    private static final int CAPTURE_RANK = 800_000;
+    private static final int KILLER_RANK = 700_000;
+    private static final int MAX_HISTORY_RANK = KILLER_RANK - KILLERS_PER_PLY - 1;
+
+    private final int[][] killers = new int[MAX_PLY][KILLERS_PER_PLY];
+    private final int[][] history = new int[PlayerRepresentation.values().length][GameState.SLOTS_PER_SIDE + 1];
+
+    private final LongAdder cutoffs = new LongAdder();
+    private final LongAdder firstMoveCutoffs = new LongAdder();
+
+    /**
+     * Sorts the valid moves of the board's active player from the most to the least promising
+     * @param board the board whose moves are sorted
+     * @param moves the valid moves, which are sorted in place
+     * @param ranks an array used to hold the rank of each move
+     * @param moveCount the number of valid moves
+     * @param transpositionTableMove the best move remembered for the board, or -1 if there is none
+     * @param ply the number of moves between the root of the search and the board
+     */
+    public void sort(SearchBoard board, int[] moves, int[] ranks, int moveCount, int transpositionTableMove, int ply)
+    {
+        for (int i = 0; i < moveCount; i++)
+        {
+            ranks[i] = rank(board, moves[i], transpositionTableMove, ply);
+        }
+
+        // Insertion sort, which is stable so that moves of equal rank keep their original order
+        for (int i = 1; i < moveCount; i++)
+        {
+            int move = moves[i];
+            int rank = ranks[i];
+            int j = i - 1;
+            while (j >= 0 && ranks[j] < rank)
+            {
+                moves[j + 1] = moves[j];
+                ranks[j + 1] = ranks[j];
+                j--;
+            }
+            moves[j + 1] = move;
+            ranks[j + 1] = rank;
+        }
+    }
+
+    private int rank(SearchBoard board, int move, int transpositionTableMove, int ply)
+    {
+        if (move == transpositionTableMove)
+        {
+            return TRANSPOSITION_TABLE_MOVE_RANK;
+        }
+        if (board.isExtraMove(move))
+        {
+            // Extra moves closer to the store first, since they leave the other extra moves intact
+            return EXTRA_MOVE_RANK - move;
+        }
+        if (board.isCapture(move))
+        {
+            return CAPTURE_RANK + board.getCapturedStones(move);
+        }
+        if (ply < MAX_PLY)
+        {
+            int[] plyKillers = killers[ply];
+            for (int i = 0; i < KILLERS_PER_PLY; i++)
+            {
+                if (plyKillers[i] == move)
+                {
+                    return KILLER_RANK - i;
+                }
+            }
+        }
+        return Math.min(history[board.getActivePlayer().ordinal()][move], MAX_HISTORY_RANK);
+    }
+
+    /**
+     * Records that a move caused a cutoff
+     * @param board the board on which the move was evaluated
+     * @param move the move causing the cutoff
+     * @param moveIndex the position of the move in the sorted order
+     * @param depth the number of levels of moves that were evaluated below the board
+     * @param ply the number of moves between the root of the search and the board
+     */
+    public void recordCutoff(SearchBoard board, int move, int moveIndex, int depth, int ply)
+    {
+        cutoffs.increment();
+        if (moveIndex == 0)
+        {
+            firstMoveCutoffs.increment();
+        }
+
+        // Extra moves and captures are already tried early, so only quiet moves are remembered
+        if (board.isExtraMove(move) || board.isCapture(move))
+        {
+            return;
+        }
+        if (ply < MAX_PLY)
+        {
+            int[] plyKillers = killers[ply];
+            if (plyKillers[0] != move)
+            {
+                plyKillers[1] = plyKillers[0];
+                plyKillers[0] = move;
+            }
+        }
+        int[] playerHistory = history[board.getActivePlayer().ordinal()];
+        playerHistory[move] = Math.min(playerHistory[move] + depth * depth, MAX_HISTORY_RANK);
+    }
+
+    /**
+     * Prepares the ordering for a new search from a different root. Killer moves are forgotten since levels are
+     * counted from the root, and the history is aged so that recent cutoffs weigh more.
+     */
+    public void newSearch()
+    {
+        for (int[] plyKillers : killers)
+        {
+            for (int i = 0; i < KILLERS_PER_PLY; i++)
+            {
+                plyKillers[i] = 0;
+            }
+        }
+        for (int[] playerHistory : history)
+        {
+            for (int i = 0; i < playerHistory.length; i++)
+            {
+                playerHistory[i] /= 2;
+            }
+        }
+        cutoffs.reset();
+        firstMoveCutoffs.reset();
+    }
+
+    /**
+     * Gets the number of nodes at which a move caused a cutoff
+     */
+    public long getCutoffCount()
+    {
+        return cutoffs.sum();
+    }
+
+    /**
+     * Gets the number of nodes at which the first move in the sorted order caused a cutoff
+     */
+    public long getFirstMoveCutoffCount()
+    {
+        return firstMoveCutoffs.sum();
+    }
+
+    /**
+     * Gets the fraction of cutoffs that were caused by the first move in the sorted order
+     */
+    public double getFirstMoveCutoffRate()
+    {
+        long cutoffCount = cutoffs.sum();
+        return cutoffCount == 0 ? 0 : (double) firstMoveCutoffs.sum() / cutoffCount;
+    }
+}
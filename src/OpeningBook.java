@@ -0,0 +1,117 @@
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/**
+ * A book of precomputed best moves for the states that are reached in the opening of a game, as built by
+ * {@link OpeningBookGenerator}.
+ *
+ * The states are identified by their Zobrist hash and kept sorted, so a move is looked up with a binary search.
+ *
+ * File format: the magic number {@link #MAGIC}, the number of entries (int), the hashes of all states in ascending
+ * order (one long each), followed by the best move of each state in the same order (one byte each).
+ */
+public class OpeningBook
+{
+    public static final int MAGIC = 0x4D4F424B;
+
+    /**
+     * The system property holding the path of the book used by computer players by default
+     */
+    public static final String DEFAULT_PATH_PROPERTY = "mancala.openingBook";
+
+    private static OpeningBook defaultBook;
+    private static boolean defaultBookLoaded;
+
+    private final long[] hashes;
+    private final byte[] moves;
+
+    /**
+     * Creates a book
+     * @param hashes the hashes of the states in the book, in ascending order
+     * @param moves the best move of each state
+     */
+    public OpeningBook(long[] hashes, byte[] moves)
+    {
+        this.hashes = hashes;
+        this.moves = moves;
+    }
+
+    /**
+     * Reads the book stored in the specified file
+     * @throws IOException if the file cannot be read or is not an opening book
+     */
+    public static OpeningBook open(Path path) throws IOException
+    {
+        try (InputStream in = Files.newInputStream(path);
+             DataInputStream data = new DataInputStream(new BufferedInputStream(in)))
+        {
+            if (data.readInt() != MAGIC)
+            {
+                throw new IOException("Not an opening book: " + path);
+            }
+            int entryCount = data.readInt();
+            long[] hashes = new long[entryCount];
+            for (int i = 0; i < entryCount; i++)
+            {
+                hashes[i] = data.readLong();
+            }
+            byte[] moves = new byte[entryCount];
+            data.readFully(moves);
+            return new OpeningBook(hashes, moves);
+        }
+    }
+
+    /**
+     * Gets the book named by the {@value #DEFAULT_PATH_PROPERTY} system property, or null if the property is not set
+     * @throws UncheckedIOException if the book cannot be read
+     */
+    public static synchronized OpeningBook getDefault()
+    {
+        if (!defaultBookLoaded)
+        {
+            String path = System.getProperty(DEFAULT_PATH_PROPERTY);
+            if (path != null)
+            {
+                try
+                {
+                    defaultBook = open(Paths.get(path));
+                }
+                catch (IOException e)
+                {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            defaultBookLoaded = true;
+        }
+        return defaultBook;
+    }
+
+    /**
+     * Gets the best move of the specified state, or -1 if the state is not in the book
+     */
+    public int getMove(GameState state)
+    {
+        int index = Arrays.binarySearch(hashes, Zobrist.hash(state));
+        if (index < 0)
+        {
+            return -1;
+        }
+        int move = moves[index];
+        return GamePlayer.isValidMove(state, move) ? move : -1;
+    }
+
+    /**
+     * Gets the number of states in the book
+     */
+    public int size()
+    {
+        return hashes.length;
+    }
+}
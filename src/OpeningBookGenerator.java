@@ -0,0 +1,142 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Builds an {@link OpeningBook} by searching the states reached in the opening of a game.
+ *
+ * The book is built for both players in turn. For the player the book is built for only the best move of each state
+ * is followed, since that is the move they will play, whereas every reply of their opponent is followed.
+ *
+ * Usage: {@code java OpeningBookGenerator <plies> <depth> <output file>}
+ */
+public class OpeningBookGenerator
+{
+    private final int plies;
+    private final int depth;
+    private final SearchEngine engine;
+    private final TranspositionTable transpositionTable;
+
+    // The best move of every state searched so far, keyed by the hash of the state
+    private final Map<Long, Integer> bestMoves = new TreeMap<>();
+
+    /**
+     * Creates a generator
+     * @param plies the number of moves from the initial state for which the book contains the best move
+     * @param depth the number of levels of moves evaluated to find the best move of each state
+     * @param engine the engine in which the searches are run
+     */
+    public OpeningBookGenerator(int plies, int depth, SearchEngine engine)
+    {
+        this.plies = plies;
+        this.depth = depth;
+        this.engine = engine;
+        this.transpositionTable = new TranspositionTable(TranspositionTable.DEFAULT_SIZE_MB * 8);
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length != 3)
+        {
+            System.out.println("Usage: java OpeningBookGenerator <plies> <depth> <output file>");
+            return;
+        }
+        int plies = Integer.parseInt(args[0]);
+        int depth = Integer.parseInt(args[1]);
+        Path path = Paths.get(args[2]);
+
+        long start = System.nanoTime();
+        OpeningBookGenerator generator = new OpeningBookGenerator(plies, depth, SearchEngine.getDefault());
+        OpeningBook book = generator.generate();
+        generator.write(path);
+        System.out.printf("Searched %d states to depth %d in %.1f s%n",
+                book.size(), depth, (System.nanoTime() - start) / 1e9);
+    }
+
+    /**
+     * Searches all states of the opening and builds the book
+     */
+    public OpeningBook generate()
+    {
+        for (PlayerRepresentation bookPlayer : PlayerRepresentation.values())
+        {
+            expand(GameState.getInitialState(), bookPlayer, 0);
+        }
+
+        long[] hashes = new long[bestMoves.size()];
+        byte[] moves = new byte[bestMoves.size()];
+        int i = 0;
+        for (Map.Entry<Long, Integer> entry : bestMoves.entrySet())
+        {
+            hashes[i] = entry.getKey();
+            moves[i] = entry.getValue().byteValue();
+            i++;
+        }
+        return new OpeningBook(hashes, moves);
+    }
+
+    private void expand(GameState state, PlayerRepresentation bookPlayer, int ply)
+    {
+        if (ply == plies || state.gameIsComplete())
+        {
+            return;
+        }
+
+        if (state.getActivePlayer() == bookPlayer)
+        {
+            int move = getBestMove(state);
+            expand(GamePlayer.performMove(state, move), bookPlayer, ply + 1);
+        }
+        else
+        {
+            for (int move : GamePlayer.POSSIBLE_MOVES)
+            {
+                if (GamePlayer.isValidMove(state, move))
+                {
+                    expand(GamePlayer.performMove(state, move), bookPlayer, ply + 1);
+                }
+            }
+        }
+    }
+
+    private int getBestMove(GameState state)
+    {
+        long hash = Zobrist.hash(state);
+        Integer bestMove = bestMoves.get(hash);
+        if (bestMove == null)
+        {
+            MoveEvaluator moveEvaluator = new MoveEvaluator(state, depth, new SearchContext(transpositionTable));
+            engine.invoke(moveEvaluator);
+            bestMove = moveEvaluator.getBestChildMove();
+            bestMoves.put(hash, bestMove);
+        }
+        return bestMove;
+    }
+
+    /**
+     * Writes the book built by {@link #generate()} to the specified file
+     */
+    public void write(Path path) throws IOException
+    {
+        try (OutputStream out = Files.newOutputStream(path);
+             DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out)))
+        {
+            data.writeInt(OpeningBook.MAGIC);
+            data.writeInt(bestMoves.size());
+            for (long hash : bestMoves.keySet())
+            {
+                data.writeLong(hash);
+            }
+            for (int move : bestMoves.values())
+            {
+                data.writeByte(move);
+            }
+        }
+    }
+}
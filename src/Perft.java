@@ -0,0 +1,233 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Counts the positions reachable from a state by performing a fixed number of moves (perft), in order to validate
+ * and benchmark the implementations of the game rules.
+ *
+ * Every move counts as a level, including moves made during an extra turn. States in which the game is complete are
+ * counted as leaves at the level they are reached, since no more moves can be made from them.
+ *
+ * The count is computed both with {@link GamePlayer}, which defines the rules, and with {@link SearchBoard}, which
+ * the search uses. Both are checked against each other and against reference counts from the initial state, and the
+ * number of positions generated per second serves as a throughput benchmark of either implementation.
+ */
+public class Perft
+{
+    // The number of positions reachable from the initial state at depths 0, 1, 2, ... These were counted once with
+    // the GamePlayer of the original game, before any of the optimisations of the rules or the search, by a plain
+    // recursive count independent of this class, so that they check both implementations against the rules as first
+    // written rather than against themselves. The first levels can be checked by hand: all 6 moves are valid from the
+    // initial state, and after the extra turn of move 4 the same player has 5 moves, giving 5 * 6 + 5 = 35 at depth 2.
+    static final long[] REFERENCE_COUNTS = {
+            1L, 6L, 35L, 185L, 942L, 4712L, 23452L, 115883L, 572138L, 2817029L, 13830455L, 67674808L
+    };
+
+    // Levels with fewer moves left than this are counted sequentially
+    private static final int SEQUENTIAL_THRESHOLD = 4;
+
+    /**
+     * Counts the positions at the specified depth below a state, applying the moves with {@link GamePlayer}
+     */
+    public static long countWithGamePlayer(GameState state, int depth, SearchEngine engine)
+    {
+        return engine.getPool().invoke(new GamePlayerTask(state, depth));
+    }
+
+    /**
+     * Counts the positions at the specified depth below a state, applying the moves with a {@link SearchBoard}
+     */
+    public static long countWithSearchBoard(GameState state, int depth, SearchEngine engine)
+    {
+        return engine.getPool().invoke(new SearchBoardTask(new SearchBoard(state), depth));
+    }
+
+    /**
+     * Counts the positions reachable from the initial state at every depth up to the specified one.
+     * Usage: {@code Perft <depth> [gameplayer|searchboard] [--verify]}. With {@code --verify} both implementations
+     * are run and their counts are checked against each other and the known counts, and the exit status is 1 if
+     * any of them differ.
+     */
+    public static void main(String[] args)
+    {
+        if (args.length == 0)
+        {
+            System.err.println("Usage: Perft <depth> [gameplayer|searchboard] [--verify]");
+            System.exit(1);
+        }
+        int maxDepth = Integer.parseInt(args[0]);
+        boolean verify = false;
+        boolean useGamePlayer = false;
+        for (int i = 1; i < args.length; i++)
+        {
+            switch (args[i].toLowerCase())
+            {
+                case "--verify":
+                    verify = true;
+                    break;
+                case "gameplayer":
+                    useGamePlayer = true;
+                    break;
+                case "searchboard":
+                    useGamePlayer = false;
+                    break;
+                default:
+                    System.err.println("Unknown argument: " + args[i]);
+                    System.exit(1);
+            }
+        }
+
+        SearchEngine engine = SearchEngine.getDefault();
+        GameState state = GameState.getInitialState();
+        boolean valid = true;
+        for (int depth = 1; depth <= maxDepth; depth++)
+        {
+            long start = System.nanoTime();
+            long count = useGamePlayer
+                    ? countWithGamePlayer(state, depth, engine)
+                    : countWithSearchBoard(state, depth, engine);
+            long elapsed = System.nanoTime() - start;
+            String line = String.format("depth %2d: %,15d positions in %8.1f ms (%,.0f positions/s)",
+                    depth, count, elapsed / 1e6, count * 1e9 / elapsed);
+
+            if (verify)
+            {
+                long otherCount = useGamePlayer
+                        ? countWithSearchBoard(state, depth, engine)
+                        : countWithGamePlayer(state, depth, engine);
+                List<String> errors = new ArrayList<>();
+                if (otherCount != count)
+                {
+                    errors.add("the other implementation counts " + otherCount);
+                }
+                if (depth < REFERENCE_COUNTS.length && REFERENCE_COUNTS[depth] != count)
+                {
+                    errors.add("expected " + REFERENCE_COUNTS[depth]);
+                }
+                if (!errors.isEmpty())
+                {
+                    valid = false;
+                    line += " MISMATCH: " + String.join(", ", errors);
+                }
+            }
+            System.out.println(line);
+        }
+        if (!valid)
+        {
+            System.exit(1);
+        }
+    }
+
+    // Counts positions by performing moves on immutable game states
+    private static class GamePlayerTask extends RecursiveTask<Long>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final GameState state;
+        private final int depth;
+
+        private GamePlayerTask(GameState state, int depth)
+        {
+            this.state = state;
+            this.depth = depth;
+        }
+
+        protected Long compute()
+        {
+            if (depth < SEQUENTIAL_THRESHOLD || state.gameIsComplete())
+            {
+                return count(state, depth);
+            }
+            List<GamePlayerTask> subtasks = new ArrayList<>();
+            for (int move : GamePlayer.POSSIBLE_MOVES)
+            {
+                if (GamePlayer.isValidMove(state, move))
+                {
+                    subtasks.add(new GamePlayerTask(GamePlayer.performMove(state, move), depth - 1));
+                }
+            }
+            invokeAll(subtasks);
+            long count = 0;
+            for (GamePlayerTask subtask : subtasks)
+            {
+                count += subtask.join();
+            }
+            return count;
+        }
+
+        private static long count(GameState state, int depth)
+        {
+            if (depth == 0 || state.gameIsComplete())
+            {
+                return 1;
+            }
+            long count = 0;
+            for (int move : GamePlayer.POSSIBLE_MOVES)
+            {
+                if (GamePlayer.isValidMove(state, move))
+                {
+                    count += count(GamePlayer.performMove(state, move), depth - 1);
+                }
+            }
+            return count;
+        }
+    }
+
+    // Counts positions by making and unmaking moves on a search board
+    private static class SearchBoardTask extends RecursiveTask<Long>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final SearchBoard board;
+        private final int depth;
+
+        private SearchBoardTask(SearchBoard board, int depth)
+        {
+            this.board = board;
+            this.depth = depth;
+        }
+
+        protected Long compute()
+        {
+            if (depth < SEQUENTIAL_THRESHOLD || board.isGameComplete())
+            {
+                return count(board, depth, new int[depth + 1][GameState.SLOTS_PER_SIDE]);
+            }
+            int[] moves = new int[GameState.SLOTS_PER_SIDE];
+            int moveCount = board.generateMoves(moves);
+            List<SearchBoardTask> subtasks = new ArrayList<>();
+            for (int i = 0; i < moveCount; i++)
+            {
+                SearchBoard child = board.copy();
+                child.makeMove(moves[i]);
+                subtasks.add(new SearchBoardTask(child, depth - 1));
+            }
+            invokeAll(subtasks);
+            long count = 0;
+            for (SearchBoardTask subtask : subtasks)
+            {
+                count += subtask.join();
+            }
+            return count;
+        }
+
+        private static long count(SearchBoard board, int depth, int[][] moveLists)
+        {
+            if (depth == 0 || board.isGameComplete())
+            {
+                return 1;
+            }
+            int[] moves = moveLists[depth];
+            int moveCount = board.generateMoves(moves);
+            long count = 0;
+            for (int i = 0; i < moveCount; i++)
+            {
+                board.makeMove(moves[i]);
+                count += count(board, depth - 1, moveLists);
+                board.unmakeMove();
+            }
+            return count;
+        }
+    }
+}
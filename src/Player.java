@@ -1,5 +1,12 @@
-
 public interface Player
 {
     public int chooseNextMove(GameState state);
+
+    /**
+     * Prepares the player for a new game, forgetting what it learned during the previous one. Players that keep no
+     * state between moves need not do anything.
+     */
+    public default void newGame()
+    {
+    }
 }
@@ -0,0 +1,451 @@
+import java.util.Arrays;
+
+/**
+ * A mutable representation of a Mancala board used by the AI search.
+ *
+ * Unlike {@link GameState}, which is immutable and copies its slots whenever they are read, a search board performs
+ * moves in place and can take them back again, so that a search can walk the state space of possible moves without
+ * allocating any objects. The rules of the game are the same as those implemented by {@link GamePlayer}.
+ *
+ * All pits, including both stores, are kept in a single array in the order stones are sown (see
+ * {@link Zobrist#pitKey}). The Zobrist hash of the board and the balance of the positional values of both sides,
+ * which {@link #evaluate} uses, are updated as stones are moved.
+ */
+public final class SearchBoard
+{
+    public static final int PITS = Zobrist.PITS;
+
+    private static final int LEFT_STORE = GameState.SLOTS_PER_SIDE;
+    private static final int RIGHT_STORE = PITS - 1;
+
+    // The number of pits a player sows into: all pits except the opponent's store
+    private static final int CYCLE_LENGTH = PITS - 1;
+
+    // The number of moves the undo history can initially hold; it grows when a search goes deeper than this
+    private static final int INITIAL_HISTORY_SIZE = 64;
+
+    private final byte[] pits = new byte[PITS];
+    private final int[] stonesInSlots = new int[2];
+    private final EvaluationWeights evaluationWeights;
+    private final int[] pitValues;
+    private final int[] captureThreats;
+    // The positional value of the left side minus that of the right side
+    private int positionalBalance;
+    private PlayerRepresentation activePlayer;
+    private long hash;
+
+    // Snapshots of the board taken before every move that has not been taken back yet
+    private byte[] pitHistory;
+    private PlayerRepresentation[] activePlayerHistory;
+    private int[] stonesInSlotsHistory;
+    private int[] positionalBalanceHistory;
+    private long[] hashHistory;
+    private int ply;
+
+    /**
+     * Creates a search board representing the specified game state, evaluated with the default weights
+     */
+    public SearchBoard(GameState state)
+    {
+        this(state, EvaluationWeights.getDefault());
+    }
+
+    /**
+     * Creates a search board representing the specified game state
+     * @param evaluationWeights the weights of the features states are evaluated by
+     */
+    public SearchBoard(GameState state, EvaluationWeights evaluationWeights)
+    {
+        this.evaluationWeights = evaluationWeights;
+        this.pitValues = evaluationWeights.getSignedPitValues();
+        this.captureThreats = evaluationWeights.getSignedCaptureThreats();
+        this.activePlayer = state.getActivePlayer();
+        int activeStore = getStore(activePlayer);
+        int opponentStore = getStore(PlayerRepresentation.getOpposite(activePlayer));
+
+        int[] slots = state.getSlots();
+        int[] opponentSlots = state.getOpponentSlots();
+        for (int i = 0; i < GameState.SLOTS_PER_SIDE; i++)
+        {
+            pits[activeStore - i - 1] = (byte) slots[i];
+            pits[opponentStore - i - 1] = (byte) opponentSlots[i];
+        }
+        pits[activeStore] = (byte) state.getScore();
+        pits[opponentStore] = (byte) state.getOpponentScore();
+
+        initialize(INITIAL_HISTORY_SIZE);
+    }
+
+    private SearchBoard(SearchBoard board, int historySize)
+    {
+        System.arraycopy(board.pits, 0, pits, 0, PITS);
+        this.evaluationWeights = board.evaluationWeights;
+        this.pitValues = board.pitValues;
+        this.captureThreats = board.captureThreats;
+        this.activePlayer = board.activePlayer;
+        initialize(historySize);
+    }
+
+    private void initialize(int historySize)
+    {
+        pitHistory = new byte[historySize * PITS];
+        activePlayerHistory = new PlayerRepresentation[historySize];
+        stonesInSlotsHistory = new int[historySize * 2];
+        positionalBalanceHistory = new int[historySize];
+        hashHistory = new long[historySize];
+
+        hash = Zobrist.activePlayerKey(activePlayer);
+        for (int pit = 0; pit < PITS; pit++)
+        {
+            hash ^= Zobrist.pitKey(pit, pits[pit]);
+        }
+        stonesInSlots[0] = countStonesInSlots(LEFT_STORE);
+        stonesInSlots[1] = countStonesInSlots(RIGHT_STORE);
+        positionalBalance = computePositionalValue(LEFT_STORE) - computePositionalValue(RIGHT_STORE);
+    }
+
+    /**
+     * Creates an independent copy of the current position of this board, without its history of moves
+     */
+    public SearchBoard copy()
+    {
+        return new SearchBoard(this, INITIAL_HISTORY_SIZE);
+    }
+
+    /**
+     * Creates an immutable game state representing the current position of this board
+     */
+    public GameState toGameState()
+    {
+        int activeStore = getStore(activePlayer);
+        int opponentStore = getStore(PlayerRepresentation.getOpposite(activePlayer));
+
+        int[] slots = new int[GameState.SLOTS_PER_SIDE];
+        int[] opponentSlots = new int[GameState.SLOTS_PER_SIDE];
+        for (int i = 0; i < GameState.SLOTS_PER_SIDE; i++)
+        {
+            slots[i] = pits[activeStore - i - 1];
+            opponentSlots[i] = pits[opponentStore - i - 1];
+        }
+        return new GameState(slots, opponentSlots, pits[activeStore], pits[opponentStore], activePlayer);
+    }
+
+    /**
+     * Performs the specified move in place
+     * @param slot the slot index, on the active player's side, indicating the move to be performed
+     */
+    public void makeMove(int slot)
+    {
+        saveSnapshot();
+
+        int activeStore = getStore(activePlayer);
+        int opponentStore = getStore(PlayerRepresentation.getOpposite(activePlayer));
+
+        int pit = activeStore - slot;
+        int stonesToDistribute = pits[pit];
+        addStones(pit, -stonesToDistribute);
+        while (stonesToDistribute > 0)
+        {
+            pit = pit == PITS - 1 ? 0 : pit + 1;
+            if (pit != opponentStore)
+            {
+                addStones(pit, 1);
+                stonesToDistribute--;
+            }
+        }
+
+        // Player captures opposite stones if move ends with placing a stone an empty slot of their own
+        if (isActiveSlot(pit, activeStore) && pits[pit] == 1)
+        {
+            int oppositePit = PITS - 2 - pit;
+            addStones(activeStore, pits[oppositePit]);
+            addStones(oppositePit, -pits[oppositePit]);
+        }
+
+        if (isGameComplete())
+        {
+            finalizeGame();
+        }
+        else if (pit != activeStore)
+        {
+            // Player gets an extra turn if their move ends with placing a stone in their store
+            setActivePlayer(PlayerRepresentation.getOpposite(activePlayer));
+        }
+    }
+
+    /**
+     * Takes back the last move performed on this board that has not been taken back yet
+     */
+    public void unmakeMove()
+    {
+        ply--;
+        System.arraycopy(pitHistory, ply * PITS, pits, 0, PITS);
+        activePlayer = activePlayerHistory[ply];
+        System.arraycopy(stonesInSlotsHistory, ply * 2, stonesInSlots, 0, 2);
+        positionalBalance = positionalBalanceHistory[ply];
+        hash = hashHistory[ply];
+    }
+
+    private void saveSnapshot()
+    {
+        if (ply == hashHistory.length)
+        {
+            int historySize = hashHistory.length * 2;
+            pitHistory = Arrays.copyOf(pitHistory, historySize * PITS);
+            activePlayerHistory = Arrays.copyOf(activePlayerHistory, historySize);
+            stonesInSlotsHistory = Arrays.copyOf(stonesInSlotsHistory, historySize * 2);
+            positionalBalanceHistory = Arrays.copyOf(positionalBalanceHistory, historySize);
+            hashHistory = Arrays.copyOf(hashHistory, historySize);
+        }
+        System.arraycopy(pits, 0, pitHistory, ply * PITS, PITS);
+        activePlayerHistory[ply] = activePlayer;
+        System.arraycopy(stonesInSlots, 0, stonesInSlotsHistory, ply * 2, 2);
+        positionalBalanceHistory[ply] = positionalBalance;
+        hashHistory[ply] = hash;
+        ply++;
+    }
+
+    // Each player captures all stones remaining in their slots after the completion of the game
+    private void finalizeGame()
+    {
+        for (int store = LEFT_STORE; store <= RIGHT_STORE; store += GameState.SLOTS_PER_SIDE + 1)
+        {
+            for (int pit = store - GameState.SLOTS_PER_SIDE; pit < store; pit++)
+            {
+                addStones(store, pits[pit]);
+                addStones(pit, -pits[pit]);
+            }
+        }
+    }
+
+    private void addStones(int pit, int stones)
+    {
+        if (stones == 0)
+        {
+            return;
+        }
+        int oldStones = pits[pit];
+        int newStones = oldStones + stones;
+        hash ^= Zobrist.pitKey(pit, oldStones);
+        pits[pit] = (byte) newStones;
+        hash ^= Zobrist.pitKey(pit, newStones);
+        if (pit != LEFT_STORE && pit != RIGHT_STORE)
+        {
+            stonesInSlots[pit < LEFT_STORE ? 0 : 1] += stones;
+            updatePositionalBalance(pit, oldStones, newStones);
+        }
+    }
+
+    // Updates the positional balance after the number of stones in a slot has changed: the value of the slot itself,
+    // the capture threat of its side if it became or stopped being empty, and the capture threat of the opponent if
+    // the opposite slot is empty
+    private void updatePositionalBalance(int pit, int oldStones, int newStones)
+    {
+        int base = pit * EvaluationWeights.STONES_PER_PIT;
+        positionalBalance += pitValues[base + newStones] - pitValues[base + oldStones];
+        int oppositePit = PITS - 2 - pit;
+        int oppositeStones = pits[oppositePit];
+        if (oppositeStones == 0)
+        {
+            positionalBalance += captureThreats[oppositePit] * (newStones - oldStones);
+        }
+        else if (oldStones == 0)
+        {
+            positionalBalance -= captureThreats[pit] * oppositeStones;
+        }
+        else if (newStones == 0)
+        {
+            positionalBalance += captureThreats[pit] * oppositeStones;
+        }
+    }
+
+    private void setActivePlayer(PlayerRepresentation player)
+    {
+        hash ^= Zobrist.activePlayerKey(activePlayer) ^ Zobrist.activePlayerKey(player);
+        activePlayer = player;
+    }
+
+    private int countStonesInSlots(int store)
+    {
+        int stones = 0;
+        for (int pit = store - GameState.SLOTS_PER_SIDE; pit < store; pit++)
+        {
+            stones += pits[pit];
+        }
+        return stones;
+    }
+
+    private int computePositionalValue(int store)
+    {
+        int value = 0;
+        for (int slot = 1; slot <= GameState.SLOTS_PER_SIDE; slot++)
+        {
+            int pit = store - slot;
+            value += evaluationWeights.getPitValue(slot, pits[pit]);
+            if (pits[pit] == 0)
+            {
+                value += evaluationWeights.getCaptureThreat() * pits[PITS - 2 - pit];
+            }
+        }
+        return value;
+    }
+
+    private static boolean isActiveSlot(int pit, int activeStore)
+    {
+        return pit < activeStore && pit >= activeStore - GameState.SLOTS_PER_SIDE;
+    }
+
+    private static int getStore(PlayerRepresentation player)
+    {
+        return player == PlayerRepresentation.LEFT ? LEFT_STORE : RIGHT_STORE;
+    }
+
+    /**
+     * Writes the valid moves of the active player into the specified array, in the order of
+     * {@link GamePlayer#POSSIBLE_MOVES}
+     * @return the number of valid moves
+     */
+    public int generateMoves(int[] moves)
+    {
+        int activeStore = getStore(activePlayer);
+        int count = 0;
+        for (int slot = 1; slot <= GameState.SLOTS_PER_SIDE; slot++)
+        {
+            if (pits[activeStore - slot] > 0)
+            {
+                moves[count++] = slot;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns true if the specified move of the active player ends with placing a stone in their store, which gives
+     * them an extra turn
+     */
+    public boolean isExtraMove(int slot)
+    {
+        int stones = getStones(slot);
+        return stones > 0 && stones % CYCLE_LENGTH == slot;
+    }
+
+    /**
+     * Returns true if the specified move of the active player ends with placing a stone in an empty slot of their
+     * own, which captures the stones in the opposite slot
+     */
+    public boolean isCapture(int slot)
+    {
+        int stones = getStones(slot);
+        if (stones == CYCLE_LENGTH)
+        {
+            // The last stone lands in the slot that was emptied at the start of the move
+            return true;
+        }
+        if (stones < slot)
+        {
+            return getStones(slot - stones) == 0;
+        }
+        if (stones >= slot + GameState.SLOTS_PER_SIDE + 1 && stones < CYCLE_LENGTH)
+        {
+            return getStones(slot + CYCLE_LENGTH - stones) == 0;
+        }
+        return false;
+    }
+
+    /**
+     * Gets the number of stones the specified move of the active player captures from the opponent, or 0 if it is
+     * not a capture
+     */
+    public int getCapturedStones(int slot)
+    {
+        if (!isCapture(slot))
+        {
+            return 0;
+        }
+        // Moves that pass the opponent's side add a stone to the opposite slot before it is captured
+        int stones = getStones(slot);
+        int lastSlot = Math.floorMod(slot - stones, CYCLE_LENGTH);
+        return getOpponentStones(GameState.SLOTS_PER_SIDE + 1 - lastSlot) + (stones > slot ? 1 : 0);
+    }
+
+    /**
+     * Returns true if the specified slot corresponds to a valid move of the active player
+     */
+    public boolean isValidMove(int slot)
+    {
+        return slot > 0 && slot <= GameState.SLOTS_PER_SIDE && pits[getStore(activePlayer) - slot] > 0;
+    }
+
+    // Game ends when either players' slots are empty
+    public boolean isGameComplete()
+    {
+        return stonesInSlots[0] == 0 || stonesInSlots[1] == 0;
+    }
+
+    public PlayerRepresentation getActivePlayer()
+    {
+        return activePlayer;
+    }
+
+    public int getScore()
+    {
+        return pits[getStore(activePlayer)];
+    }
+
+    public int getOpponentScore()
+    {
+        return pits[getStore(PlayerRepresentation.getOpposite(activePlayer))];
+    }
+
+    /**
+     * Gets the number of stones in the specified slot of the active player
+     */
+    public int getStones(int slot)
+    {
+        return pits[getStore(activePlayer) - slot];
+    }
+
+    /**
+     * Gets the number of stones in the specified slot of the active player's opponent
+     */
+    public int getOpponentStones(int slot)
+    {
+        return pits[getStore(PlayerRepresentation.getOpposite(activePlayer)) - slot];
+    }
+
+    /**
+     * Evaluates the current state from the perspective of the active player: the difference between the scores
+     * plus the difference between the positional values of both sides, measured in fractions of a stone as defined
+     * by {@link EvaluationWeights}. The positional values are kept up to date as stones are moved, so evaluating a
+     * state takes constant time.
+     */
+    public int evaluate()
+    {
+        int balance = activePlayer == PlayerRepresentation.LEFT ? positionalBalance : -positionalBalance;
+        return EvaluationWeights.STONE * (getScore() - getOpponentScore()) + balance;
+    }
+
+    /**
+     * Gets the evaluation weights of this board
+     */
+    public EvaluationWeights getEvaluationWeights()
+    {
+        return evaluationWeights;
+    }
+
+    /**
+     * Gets the number of stones that are not in either store
+     */
+    public int getStonesOnBoard()
+    {
+        return stonesInSlots[0] + stonesInSlots[1];
+    }
+
+    /**
+     * Gets the Zobrist hash of the current position
+     */
+    public long getHash()
+    {
+        return hash;
+    }
+}
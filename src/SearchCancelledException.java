@@ -0,0 +1,18 @@
+/**
+ * Thrown by a move evaluator that is stopped before its search is complete, for example because the time budget of
+ * the search ran out. The results of a cancelled search must be discarded.
+ */
+public class SearchCancelledException extends RuntimeException
+{
+    private static final long serialVersionUID = 1L;
+
+    public SearchCancelledException()
+    {
+        super("Search cancelled");
+    }
+
+    public SearchCancelledException(Throwable cause)
+    {
+        super("Search cancelled", cause);
+    }
+}
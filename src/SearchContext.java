@@ -0,0 +1,225 @@
+/**
+ * The structures and limits shared by all the move evaluators of a single search.
+ *
+ * The deadline of a context can be moved while its search is running, which stops the search early or lets it run
+ * for longer, for example when a search started on the opponent's time becomes the search for the next move. A
+ * search stopped by its deadline keeps the results of the iterations it completed, while a search cancelled through
+ * the {@link CancellationToken} of its context is abandoned altogether. All copies of a context share its token.
+ */
+public class SearchContext
+{
+    public static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    private final TranspositionTable transpositionTable;
+    private final MoveOrdering moveOrdering;
+    private final EndgameDatabase endgameDatabase;
+    private final EvaluationWeights evaluationWeights;
+    private final boolean sequential;
+    private final int sequentialThreshold;
+    private final int maxSurplusTasks;
+    private final CancellationToken cancellationToken;
+    private volatile long deadline;
+
+    /**
+     * Creates the context of a search that runs until it is complete
+     * @param transpositionTable the table shared by all evaluators of the search, or null to evaluate every state
+     */
+    public SearchContext(TranspositionTable transpositionTable)
+    {
+        this(transpositionTable, new MoveOrdering(), NO_DEADLINE);
+    }
+
+    /**
+     * Creates the context of a search that is stopped once the specified deadline has passed
+     * @param transpositionTable the table shared by all evaluators of the search, or null to evaluate every state
+     * @param moveOrdering the ordering of moves shared by all evaluators of the search
+     * @param deadline the value of {@link System#nanoTime()} at which the search is stopped, or {@link #NO_DEADLINE}
+     */
+    public SearchContext(TranspositionTable transpositionTable, MoveOrdering moveOrdering, long deadline)
+    {
+        this(transpositionTable, moveOrdering, null, EvaluationWeights.getDefault(), false,
+                MoveEvaluator.DEFAULT_SEQUENTIAL_THRESHOLD, MoveEvaluator.DEFAULT_MAX_SURPLUS_TASKS,
+                new CancellationToken(), deadline);
+    }
+
+    private SearchContext(TranspositionTable transpositionTable, MoveOrdering moveOrdering,
+                          EndgameDatabase endgameDatabase, EvaluationWeights evaluationWeights, boolean sequential,
+                          int sequentialThreshold, int maxSurplusTasks, CancellationToken cancellationToken,
+                          long deadline)
+    {
+        this.transpositionTable = transpositionTable;
+        this.moveOrdering = moveOrdering;
+        this.endgameDatabase = endgameDatabase;
+        this.evaluationWeights = evaluationWeights;
+        this.sequential = sequential;
+        this.sequentialThreshold = sequentialThreshold;
+        this.maxSurplusTasks = maxSurplusTasks;
+        this.cancellationToken = cancellationToken;
+        this.deadline = deadline;
+    }
+
+    /**
+     * Creates a copy of this context in which the exact values of states are looked up in the specified database
+     * whenever it contains them
+     */
+    public SearchContext withEndgameDatabase(EndgameDatabase endgameDatabase)
+    {
+        return new SearchContext(transpositionTable, moveOrdering, endgameDatabase, evaluationWeights, sequential,
+                sequentialThreshold, maxSurplusTasks, cancellationToken, deadline);
+    }
+
+    /**
+     * Creates a copy of this context in which states at the horizon of the search are evaluated with the specified
+     * weights. States evaluated with different weights must not share a transposition table.
+     */
+    public SearchContext withEvaluationWeights(EvaluationWeights evaluationWeights)
+    {
+        return new SearchContext(transpositionTable, moveOrdering, endgameDatabase, evaluationWeights, sequential,
+                sequentialThreshold, maxSurplusTasks, cancellationToken, deadline);
+    }
+
+    /**
+     * Creates a copy of this context in which the moves are sorted by the specified ordering
+     */
+    public SearchContext withMoveOrdering(MoveOrdering moveOrdering)
+    {
+        return new SearchContext(transpositionTable, moveOrdering, endgameDatabase, evaluationWeights, sequential,
+                sequentialThreshold, maxSurplusTasks, cancellationToken, deadline);
+    }
+
+    /**
+     * Creates a copy of this context in which every evaluator searches its whole part of the state space in the
+     * thread it runs in instead of forking subtasks, for searches that are parallelised by other means
+     */
+    public SearchContext withSequentialSearch()
+    {
+        return new SearchContext(transpositionTable, moveOrdering, endgameDatabase, evaluationWeights, true,
+                sequentialThreshold, maxSurplusTasks, cancellationToken, deadline);
+    }
+
+    /**
+     * Creates a copy of this context with different limits on the nodes whose child moves are forked
+     * @param sequentialThreshold the number of levels of moves a node must have left to evaluate for its child moves
+     *                            to be forked
+     * @param maxSurplusTasks the largest number of surplus tasks the thread evaluating a node may have queued for
+     *                        its child moves to be forked (see
+     *                        {@link java.util.concurrent.ForkJoinTask#getSurplusQueuedTaskCount})
+     */
+    public SearchContext withForkThresholds(int sequentialThreshold, int maxSurplusTasks)
+    {
+        return new SearchContext(transpositionTable, moveOrdering, endgameDatabase, evaluationWeights, sequential,
+                sequentialThreshold, maxSurplusTasks, cancellationToken, deadline);
+    }
+
+    /**
+     * Creates a copy of this context whose search is cancelled through the specified token
+     */
+    public SearchContext withCancellationToken(CancellationToken cancellationToken)
+    {
+        return new SearchContext(transpositionTable, moveOrdering, endgameDatabase, evaluationWeights, sequential,
+                sequentialThreshold, maxSurplusTasks, cancellationToken, deadline);
+    }
+
+    /**
+     * Creates a copy of this context in which the search is stopped once the specified deadline has passed
+     * @param deadline the value of {@link System#nanoTime()} at which the search is stopped, or {@link #NO_DEADLINE}
+     */
+    public SearchContext withDeadline(long deadline)
+    {
+        return new SearchContext(transpositionTable, moveOrdering, endgameDatabase, evaluationWeights, sequential,
+                sequentialThreshold, maxSurplusTasks, cancellationToken, deadline);
+    }
+
+    /**
+     * Moves the deadline of this context, and thus of all evaluators using it
+     * @param deadline the value of {@link System#nanoTime()} at which the search is stopped, or {@link #NO_DEADLINE}
+     */
+    public void setDeadline(long deadline)
+    {
+        this.deadline = deadline;
+    }
+
+    /**
+     * Stops the search using this context as soon as possible, as if its deadline had passed
+     */
+    public void stop()
+    {
+        this.deadline = System.nanoTime();
+    }
+
+    public long getDeadline()
+    {
+        return deadline;
+    }
+
+    public TranspositionTable getTranspositionTable()
+    {
+        return transpositionTable;
+    }
+
+    public MoveOrdering getMoveOrdering()
+    {
+        return moveOrdering;
+    }
+
+    /**
+     * Gets the database of exact values of states with few stones left, or null if the search does not use one
+     */
+    public EndgameDatabase getEndgameDatabase()
+    {
+        return endgameDatabase;
+    }
+
+    public EvaluationWeights getEvaluationWeights()
+    {
+        return evaluationWeights;
+    }
+
+    /**
+     * Returns true if the evaluators of the search never fork subtasks
+     */
+    public boolean isSequential()
+    {
+        return sequential;
+    }
+
+    public int getSequentialThreshold()
+    {
+        return sequentialThreshold;
+    }
+
+    public int getMaxSurplusTasks()
+    {
+        return maxSurplusTasks;
+    }
+
+    public CancellationToken getCancellationToken()
+    {
+        return cancellationToken;
+    }
+
+    /**
+     * Returns true if the search has been cancelled through the token of this context
+     */
+    public boolean isCancelled()
+    {
+        return cancellationToken.isCancelled();
+    }
+
+    /**
+     * Returns true if the search has a deadline and it has passed
+     */
+    public boolean isPastDeadline()
+    {
+        long deadline = this.deadline;
+        return deadline != NO_DEADLINE && System.nanoTime() - deadline >= 0;
+    }
+
+    /**
+     * Returns true if the search has been cancelled or its deadline has passed, in which case its evaluators stop
+     */
+    public boolean isStopped()
+    {
+        return cancellationToken.isCancelled() || isPastDeadline();
+    }
+}
@@ -0,0 +1,135 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The executor in which move evaluators are run. An engine owns a single long-lived fork/join pool that is shared by
+ * all the computer players using it, across moves and games, so that a search never pays for starting threads.
+ */
+public class SearchEngine implements AutoCloseable
+{
+    private static SearchEngine defaultEngine;
+
+    private final ForkJoinPool pool;
+
+    private final LongAdder searches = new LongAdder();
+    private final LongAdder searchNanos = new LongAdder();
+
+    /**
+     * Creates an engine whose pool uses daemon threads
+     * @param parallelism the number of threads used by the pool
+     */
+    public SearchEngine(int parallelism)
+    {
+        this(parallelism, newThreadFactory("mancala-search", true));
+    }
+
+    /**
+     * Creates an engine
+     * @param parallelism the number of threads used by the pool
+     * @param threadFactory the factory creating the threads of the pool
+     */
+    public SearchEngine(int parallelism, ForkJoinPool.ForkJoinWorkerThreadFactory threadFactory)
+    {
+        this.pool = new ForkJoinPool(parallelism, threadFactory, null, false);
+    }
+
+    /**
+     * Gets the engine shared by all computer players that are not given an engine of their own. It uses one thread
+     * per available processor and is shut down when the JVM exits.
+     */
+    public static synchronized SearchEngine getDefault()
+    {
+        if (defaultEngine == null)
+        {
+            SearchEngine engine = new SearchEngine(Runtime.getRuntime().availableProcessors());
+            Runtime.getRuntime().addShutdownHook(new Thread(engine::close, "mancala-search-shutdown"));
+            defaultEngine = engine;
+        }
+        return defaultEngine;
+    }
+
+    /**
+     * Creates a factory of pool threads named after the specified prefix and numbered in order of creation
+     */
+    public static ForkJoinPool.ForkJoinWorkerThreadFactory newThreadFactory(String namePrefix, boolean daemon)
+    {
+        AtomicInteger threadCount = new AtomicInteger();
+        return pool ->
+        {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName(namePrefix + "-" + threadCount.incrementAndGet());
+            thread.setDaemon(daemon);
+            return thread;
+        };
+    }
+
+    /**
+     * Runs the specified move evaluator in the pool and waits for its result
+     */
+    public void invoke(MoveEvaluator moveEvaluator)
+    {
+        long start = System.nanoTime();
+        try
+        {
+            pool.invoke(moveEvaluator);
+        }
+        finally
+        {
+            searches.increment();
+            searchNanos.add(System.nanoTime() - start);
+        }
+    }
+
+    public ForkJoinPool getPool()
+    {
+        return pool;
+    }
+
+    public int getParallelism()
+    {
+        return pool.getParallelism();
+    }
+
+    /**
+     * Gets the number of tasks stolen between the threads of the pool since it was created
+     */
+    public long getStealCount()
+    {
+        return pool.getStealCount();
+    }
+
+    /**
+     * Gets the number of move evaluators run by this engine
+     */
+    public long getSearchCount()
+    {
+        return searches.sum();
+    }
+
+    /**
+     * Gets the total time spent running move evaluators, in nanoseconds
+     */
+    public long getSearchNanos()
+    {
+        return searchNanos.sum();
+    }
+
+    /**
+     * Shuts down the pool, cancelling any running searches, and waits briefly for its threads to stop
+     */
+    public void close()
+    {
+        pool.shutdownNow();
+        try
+        {
+            pool.awaitTermination(1, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
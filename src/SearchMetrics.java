@@ -0,0 +1,253 @@
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Counters of the work done by computer players, aggregated over all their moves.
+ *
+ * Every counter is a {@link LongAdder}, which is striped across the threads updating it, and is only updated once per
+ * move, so that recording the metrics costs nothing measurable compared to a search. A histogram of the time taken
+ * per move can additionally be enabled to monitor latency percentiles.
+ *
+ * The default metrics, which all computer players record into, are registered as the MBean {@value #OBJECT_NAME}.
+ */
+public class SearchMetrics implements SearchMetricsMBean
+{
+    public static final String OBJECT_NAME = "mancala:type=SearchMetrics";
+
+    /**
+     * The system property that enables the latency histogram of the default metrics when set to true
+     */
+    public static final String LATENCY_HISTOGRAM_PROPERTY = "mancala.metrics.latencyHistogram";
+
+    // Bucket i of the latency histogram counts moves that took less than 2^i microseconds, and at least half of that
+    private static final int LATENCY_BUCKETS = 40;
+
+    private static SearchMetrics defaultMetrics;
+
+    private final LongAdder searches = new LongAdder();
+    private final LongAdder bookMoves = new LongAdder();
+    private final LongAdder nodes = new LongAdder();
+    private final LongAdder forks = new LongAdder();
+    private final LongAdder depths = new LongAdder();
+    private final LongAdder moveNanos = new LongAdder();
+    private final LongAdder searchNanos = new LongAdder();
+    private final LongAdder playedMoves = new LongAdder();
+    private final LongAdder[] latencyBuckets = new LongAdder[LATENCY_BUCKETS];
+
+    private volatile boolean latencyHistogramEnabled;
+
+    public SearchMetrics()
+    {
+        for (int i = 0; i < LATENCY_BUCKETS; i++)
+        {
+            latencyBuckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Gets the metrics all computer players record into unless they are given metrics of their own, registering them
+     * with the platform MBean server the first time
+     */
+    public static synchronized SearchMetrics getDefault()
+    {
+        if (defaultMetrics == null)
+        {
+            SearchMetrics metrics = new SearchMetrics();
+            metrics.setLatencyHistogramEnabled(Boolean.getBoolean(LATENCY_HISTOGRAM_PROPERTY));
+            try
+            {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, new ObjectName(OBJECT_NAME));
+            }
+            catch (JMException e)
+            {
+                // The metrics are still available programmatically if they cannot be monitored through JMX
+            }
+            defaultMetrics = metrics;
+        }
+        return defaultMetrics;
+    }
+
+    /**
+     * Records the statistics of a search that determined a move
+     */
+    public void recordSearch(SearchStats stats)
+    {
+        searches.increment();
+        nodes.add(stats.getNodeCount());
+        forks.add(stats.getForkCount());
+        depths.add(stats.getDepth());
+        searchNanos.add(stats.getElapsedNanos());
+        recordMoveTime(stats.getElapsedNanos());
+    }
+
+    /**
+     * Records a move that was taken from an opening book without searching
+     */
+    public void recordBookMove(long elapsedNanos)
+    {
+        bookMoves.increment();
+        recordMoveTime(elapsedNanos);
+    }
+
+    /**
+     * Records a move played in a game, by any player. The game loops call this once per move rather than the rules
+     * counting every move they perform, which would include the moves of perft counts and game replays.
+     */
+    public void recordPlayedMove()
+    {
+        playedMoves.increment();
+    }
+
+    private void recordMoveTime(long elapsedNanos)
+    {
+        moveNanos.add(elapsedNanos);
+        if (latencyHistogramEnabled)
+        {
+            long micros = Math.max(elapsedNanos / 1000, 0);
+            int bucket = Math.min(64 - Long.numberOfLeadingZeros(micros), LATENCY_BUCKETS - 1);
+            latencyBuckets[bucket].increment();
+        }
+    }
+
+    public long getSearchCount()
+    {
+        return searches.sum();
+    }
+
+    public long getBookMoveCount()
+    {
+        return bookMoves.sum();
+    }
+
+    /**
+     * Gets the number of states visited by all recorded searches
+     */
+    public long getNodeCount()
+    {
+        return nodes.sum();
+    }
+
+    /**
+     * Gets the number of subtasks forked by all recorded searches
+     */
+    public long getForkCount()
+    {
+        return forks.sum();
+    }
+
+    /**
+     * Gets the number of moves played in games, whether by a computer player or not
+     */
+    public long getPlayedMoveCount()
+    {
+        return playedMoves.sum();
+    }
+
+    /**
+     * Gets the number of states visited per second of searching, leaving out the time spent on book moves
+     */
+    public double getNodesPerSecond()
+    {
+        long nanos = searchNanos.sum();
+        return nanos == 0 ? 0 : nodes.sum() * 1e9 / nanos;
+    }
+
+    /**
+     * Gets the average number of levels of moves completely evaluated by the recorded searches
+     */
+    public double getAverageDepth()
+    {
+        long searchCount = searches.sum();
+        return searchCount == 0 ? 0 : (double) depths.sum() / searchCount;
+    }
+
+    /**
+     * Gets the average time taken to determine a move, in milliseconds
+     */
+    public double getAverageMoveMillis()
+    {
+        long moveCount = searches.sum() + bookMoves.sum();
+        return moveCount == 0 ? 0 : moveNanos.sum() / 1e6 / moveCount;
+    }
+
+    public double getMedianMoveMillis()
+    {
+        return getMoveMillisPercentile(0.5);
+    }
+
+    public double getP99MoveMillis()
+    {
+        return getMoveMillisPercentile(0.99);
+    }
+
+    /**
+     * Gets an upper bound of the specified percentile of the time taken to determine a move, in milliseconds, which
+     * is at most twice the actual value. Only moves recorded while the latency histogram was enabled are included.
+     * @param percentile the percentile, between 0 and 1
+     */
+    public double getMoveMillisPercentile(double percentile)
+    {
+        long[] counts = new long[LATENCY_BUCKETS];
+        long total = 0;
+        for (int i = 0; i < LATENCY_BUCKETS; i++)
+        {
+            counts[i] = latencyBuckets[i].sum();
+            total += counts[i];
+        }
+        if (total == 0)
+        {
+            return 0;
+        }
+
+        long rank = (long) Math.ceil(percentile * total);
+        long seen = 0;
+        for (int i = 0; i < LATENCY_BUCKETS; i++)
+        {
+            seen += counts[i];
+            if (seen >= Math.max(rank, 1))
+            {
+                return (1L << i) / 1000.0;
+            }
+        }
+        return (1L << (LATENCY_BUCKETS - 1)) / 1000.0;
+    }
+
+    public boolean isLatencyHistogramEnabled()
+    {
+        return latencyHistogramEnabled;
+    }
+
+    public void setLatencyHistogramEnabled(boolean enabled)
+    {
+        this.latencyHistogramEnabled = enabled;
+    }
+
+    /**
+     * Resets all counters. Moves recorded concurrently with a reset may be partially counted.
+     */
+    public void reset()
+    {
+        searches.reset();
+        bookMoves.reset();
+        nodes.reset();
+        forks.reset();
+        depths.reset();
+        moveNanos.reset();
+        searchNanos.reset();
+        playedMoves.reset();
+        for (LongAdder bucket : latencyBuckets)
+        {
+            bucket.reset();
+        }
+    }
+
+    public String toString()
+    {
+        return String.format("%d searches, %d book moves, %d nodes (%.0f nodes/s), %d forks, average depth %.1f, "
+                        + "%.1f ms per move, %d moves played",
+                getSearchCount(), getBookMoveCount(), getNodeCount(), getNodesPerSecond(), getForkCount(),
+                getAverageDepth(), getAverageMoveMillis(), getPlayedMoveCount());
+    }
+}
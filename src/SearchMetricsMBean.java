@@ -0,0 +1,32 @@
+/**
+ * The management interface of {@link SearchMetrics}, through which the throughput of the computer players can be
+ * monitored with any JMX client
+ */
+public interface SearchMetricsMBean
+{
+    long getSearchCount();
+
+    long getBookMoveCount();
+
+    long getNodeCount();
+
+    long getForkCount();
+
+    long getPlayedMoveCount();
+
+    double getNodesPerSecond();
+
+    double getAverageDepth();
+
+    double getAverageMoveMillis();
+
+    double getMedianMoveMillis();
+
+    double getP99MoveMillis();
+
+    boolean isLatencyHistogramEnabled();
+
+    void setLatencyHistogramEnabled(boolean enabled);
+
+    void reset();
+}
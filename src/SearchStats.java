@@ -0,0 +1,122 @@
+/**
+ * Statistics of the search performed by a computer player to determine a single move
+ */
+public class SearchStats
+{
+    private final int move;
+    private final int fitness;
+    private final int depth;
+    private final long nodeCount;
+    private final long elapsedNanos;
+    private final long forkCount;
+    private final long stealCount;
+    private final long cutoffCount;
+    private final long firstMoveCutoffCount;
+
+    public SearchStats(int move, int fitness, int depth, long nodeCount, long elapsedNanos, long forkCount,
+                       long stealCount, long cutoffCount, long firstMoveCutoffCount)
+    {
+        this.move = move;
+        this.fitness = fitness;
+        this.depth = depth;
+        this.nodeCount = nodeCount;
+        this.elapsedNanos = elapsedNanos;
+        this.forkCount = forkCount;
+        this.stealCount = stealCount;
+        this.cutoffCount = cutoffCount;
+        this.firstMoveCutoffCount = firstMoveCutoffCount;
+    }
+
+    public int getMove()
+    {
+        return move;
+    }
+
+    /**
+     * Gets the fitness of the chosen move from the perspective of the player performing it, in fractions of a stone
+     * as defined by {@link EvaluationWeights}
+     */
+    public int getFitness()
+    {
+        return fitness;
+    }
+
+    /**
+     * Gets the number of levels of moves that were completely evaluated
+     */
+    public int getDepth()
+    {
+        return depth;
+    }
+
+    /**
+     * Gets the number of states visited by the completed evaluations of the search
+     */
+    public long getNodeCount()
+    {
+        return nodeCount;
+    }
+
+    public long getElapsedNanos()
+    {
+        return elapsedNanos;
+    }
+
+    /**
+     * Gets the number of subtasks forked by the completed evaluations of the search
+     */
+    public long getForkCount()
+    {
+        return forkCount;
+    }
+
+    /**
+     * Gets the number of tasks stolen between the threads of the pool while the search was running. Searches running
+     * concurrently in the same pool are included in this count.
+     */
+    public long getStealCount()
+    {
+        return stealCount;
+    }
+
+    /**
+     * Gets the number of states at which a move caused a cutoff
+     */
+    public long getCutoffCount()
+    {
+        return cutoffCount;
+    }
+
+    /**
+     * Gets the number of states at which the first move evaluated caused a cutoff
+     */
+    public long getFirstMoveCutoffCount()
+    {
+        return firstMoveCutoffCount;
+    }
+
+    /**
+     * Gets the fraction of cutoffs that were caused by the first move evaluated, which measures the quality of the
+     * move ordering
+     */
+    public double getFirstMoveCutoffRate()
+    {
+        return cutoffCount == 0 ? 0 : (double) firstMoveCutoffCount / cutoffCount;
+    }
+
+    /**
+     * Gets the number of states visited per second
+     */
+    public double getNodesPerSecond()
+    {
+        return elapsedNanos == 0 ? 0 : nodeCount * 1e9 / elapsedNanos;
+    }
+
+    public String toString()
+    {
+        return String.format("move %d, fitness %.2f, depth %d, %d nodes in %.1f ms (%.0f nodes/s), %d forks, "
+                        + "%d steals, %.1f%% first-move cutoffs",
+                move, fitness / (double) EvaluationWeights.STONE, depth, nodeCount, elapsedNanos / 1e6,
+                getNodesPerSecond(), forkCount, stealCount, getFirstMoveCutoffRate() * 100);
+    }
+}
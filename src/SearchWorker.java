@@ -0,0 +1,311 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A process evaluating subtrees of the searches of {@link DistributedSearch} coordinators, which connect to it over
+ * TCP on the loopback interface. All subtrees are searched in one engine and share one transposition table, which is
+ * kept between searches.
+ *
+ * The protocol is binary and big-endian. A coordinator opens a connection with {@link #MAGIC} and {@link #VERSION}
+ * as ints, which the worker echoes, and then sends two kinds of messages:
+ * <pre>
+ * SEARCH  byte 1, int task, state, byte depth, byte extensions, int alpha, int beta
+ * CANCEL  byte 2, int task
+ * </pre>
+ * A state takes {@value #STATE_SIZE} bytes: the active player's slots 1 to 6 and store, the opponent's slots 1 to 6
+ * and store, and the active player (0 for LEFT, 1 for RIGHT). The worker answers every search with a result holding
+ * the task as an int, a byte that is {@link #COMPLETED} or {@link #CANCELLED}, the fitness of the state from the
+ * perspective of its active player as an int and the number of states visited as a long. A cancelled search is
+ * stopped within a fraction of a millisecond, and its fitness is meaningless.
+ */
+public class SearchWorker implements AutoCloseable
+{
+    public static final int DEFAULT_PORT = 7338;
+
+    public static final int MAGIC = 0x4D445357;
+    public static final int VERSION = 1;
+
+    // The types of messages sent by a coordinator
+    static final int SEARCH = 1;
+    static final int CANCEL = 2;
+
+    // The statuses of results
+    static final int COMPLETED = 0;
+    static final int CANCELLED = 1;
+
+    static final int STATE_SIZE = 2 * (GameState.SLOTS_PER_SIDE + 1) + 1;
+
+    private static final int DEFAULT_TABLE_SIZE_MB = 256;
+
+    private final ServerSocket serverSocket;
+    private final SearchEngine engine;
+    private final TranspositionTable transpositionTable;
+    private final ExecutorService executor = GameServer.newSessionExecutor("mancala-worker");
+    private final Set<Socket> sockets = ConcurrentHashMap.newKeySet();
+    private final AtomicLong searchCount = new AtomicLong();
+    private Thread acceptThread;
+
+    /**
+     * Creates a worker listening on the loopback interface
+     * @param port the port to listen on, or 0 to use any free port
+     * @param engine the engine in which all subtrees are searched
+     * @param transpositionTableSizeInMB the size of the transposition table shared by all searches
+     */
+    public SearchWorker(int port, SearchEngine engine, int transpositionTableSizeInMB) throws IOException
+    {
+        this.serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        this.engine = engine;
+        this.transpositionTable = new TranspositionTable(transpositionTableSizeInMB);
+    }
+
+    /**
+     * Runs a worker until the JVM is stopped.
+     * Usage: {@code SearchWorker [<port>] [--threads <threads>] [--table <transposition table MB>]}
+     */
+    public static void main(String[] args) throws IOException, InterruptedException
+    {
+        int port = DEFAULT_PORT;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int tableSize = DEFAULT_TABLE_SIZE_MB;
+        for (int i = 0; i < args.length; i++)
+        {
+            switch (args[i])
+            {
+                case "--threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "--table":
+                    tableSize = Integer.parseInt(args[++i]);
+                    break;
+                default:
+                    port = Integer.parseInt(args[i]);
+            }
+        }
+
+        SearchWorker worker = new SearchWorker(port, new SearchEngine(threads), tableSize);
+        worker.start();
+        System.out.println("Search worker listening on port " + worker.getPort() + " with " + threads + " threads");
+        worker.acceptThread.join();
+    }
+
+    /**
+     * Starts accepting connections in the background
+     */
+    public synchronized void start()
+    {
+        if (acceptThread != null)
+        {
+            throw new IllegalStateException("Worker already started");
+        }
+        acceptThread = new Thread(this::acceptConnections, "mancala-worker-accept");
+        acceptThread.start();
+    }
+
+    private void acceptConnections()
+    {
+        while (!serverSocket.isClosed())
+        {
+            try
+            {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                sockets.add(socket);
+                executor.execute(() -> serveConnection(socket));
+            }
+            catch (IOException e)
+            {
+                if (!serverSocket.isClosed())
+                {
+                    System.err.println("Failed to accept a connection: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    // Reads the messages of a coordinator until it disconnects, running every search in the background so that it
+    // can be cancelled while it runs
+    private void serveConnection(Socket socket)
+    {
+        Map<Integer, CancellationToken> runningSearches = new ConcurrentHashMap<>();
+        MoveOrdering moveOrdering = new MoveOrdering();
+        try (Socket s = socket;
+             DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream())))
+        {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION)
+            {
+                return;
+            }
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.flush();
+
+            while (true)
+            {
+                int type = in.read();
+                if (type == -1)
+                {
+                    return;
+                }
+                int task = in.readInt();
+                if (type == SEARCH)
+                {
+                    GameState state = readState(in);
+                    int depth = in.readUnsignedByte();
+                    int extensions = in.readUnsignedByte();
+                    int alpha = in.readInt();
+                    int beta = in.readInt();
+                    CancellationToken cancellationToken = new CancellationToken();
+                    runningSearches.put(task, cancellationToken);
+                    SearchContext context = new SearchContext(transpositionTable, moveOrdering,
+                            SearchContext.NO_DEADLINE)
+                            .withEndgameDatabase(EndgameDatabase.getDefault())
+                            .withCancellationToken(cancellationToken);
+                    MoveEvaluator moveEvaluator = new MoveEvaluator(state, depth, alpha, beta, extensions, context);
+                    executor.execute(() -> search(task, moveEvaluator, out, runningSearches));
+                }
+                else if (type == CANCEL)
+                {
+                    CancellationToken cancellationToken = runningSearches.get(task);
+                    if (cancellationToken != null)
+                    {
+                        cancellationToken.cancel();
+                    }
+                }
+                else
+                {
+                    throw new IOException("Unknown message type " + type);
+                }
+            }
+        }
+        catch (SocketException | EOFException e)
+        {
+            // The coordinator disconnected or the worker is shutting down
+        }
+        catch (IOException e)
+        {
+            System.err.println("Connection failed: " + e.getMessage());
+        }
+        finally
+        {
+            runningSearches.values().forEach(CancellationToken::cancel);
+            sockets.remove(socket);
+        }
+    }
+
+    // Runs a search and sends its result, or that it was cancelled
+    private void search(int task, MoveEvaluator moveEvaluator, DataOutputStream out,
+                        Map<Integer, CancellationToken> runningSearches)
+    {
+        int status = COMPLETED;
+        try
+        {
+            engine.invoke(moveEvaluator);
+            searchCount.incrementAndGet();
+        }
+        catch (SearchCancelledException e)
+        {
+            status = CANCELLED;
+        }
+        finally
+        {
+            runningSearches.remove(task);
+        }
+
+        try
+        {
+            synchronized (out)
+            {
+                out.writeInt(task);
+                out.writeByte(status);
+                out.writeInt(moveEvaluator.getMaxChildFitness());
+                out.writeLong(moveEvaluator.getNodeCount());
+                out.flush();
+            }
+        }
+        catch (IOException e)
+        {
+            // The coordinator disconnected, which the connection's reader finds out as well
+        }
+    }
+
+    /**
+     * Writes a state in the {@value #STATE_SIZE} bytes of the protocol
+     */
+    static void writeState(DataOutputStream out, GameState state) throws IOException
+    {
+        for (int stones : state.getSlots())
+        {
+            out.writeByte(stones);
+        }
+        out.writeByte(state.getScore());
+        for (int stones : state.getOpponentSlots())
+        {
+            out.writeByte(stones);
+        }
+        out.writeByte(state.getOpponentScore());
+        out.writeByte(state.getActivePlayer() == PlayerRepresentation.LEFT ? 0 : 1);
+    }
+
+    /**
+     * Reads a state written by {@link #writeState}
+     */
+    static GameState readState(DataInputStream in) throws IOException
+    {
+        int[] slots = new int[GameState.SLOTS_PER_SIDE];
+        int[] opponentSlots = new int[GameState.SLOTS_PER_SIDE];
+        for (int i = 0; i < GameState.SLOTS_PER_SIDE; i++)
+        {
+            slots[i] = in.readUnsignedByte();
+        }
+        int score = in.readUnsignedByte();
+        for (int i = 0; i < GameState.SLOTS_PER_SIDE; i++)
+        {
+            opponentSlots[i] = in.readUnsignedByte();
+        }
+        int opponentScore = in.readUnsignedByte();
+        PlayerRepresentation activePlayer = in.readUnsignedByte() == 0
+                ? PlayerRepresentation.LEFT
+                : PlayerRepresentation.RIGHT;
+        return new GameState(slots, opponentSlots, score, opponentScore, activePlayer);
+    }
+
+    public int getPort()
+    {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Gets the number of searches completed since the worker was created
+     */
+    public long getSearchCount()
+    {
+        return searchCount.get();
+    }
+
+    /**
+     * Stops accepting connections and closes all open ones, cancelling their searches
+     */
+    public void close() throws IOException
+    {
+        serverSocket.close();
+        for (Socket socket : sockets)
+        {
+            socket.close();
+        }
+        executor.shutdownNow();
+    }
+}
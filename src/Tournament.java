@@ -0,0 +1,503 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * A headless round-robin tournament between players, used to measure their relative strength over many games.
+ *
+ * Every pair of entrants plays the same set of openings, each consisting of a few random moves from the initial state,
+ * once with each entrant moving first so that neither gains from a lopsided opening. Games are played concurrently
+ * without any console output, and the result of each game is reported as soon as it completes.
+ *
+ * Entrants are given as suppliers so that every thread playing games gets its own players: computer players keep
+ * state between moves and must not be shared by concurrent games. A thread reuses its players for all of its games,
+ * telling them of every new game, rather than allocating new transposition tables and search trees for every game.
+ */
+public class Tournament
+{
+    public static final int DEFAULT_OPENING_PLIES = 4;
+
+    private final List<Entrant> entrants = new ArrayList<>();
+    private final int gamesPerPairing;
+    private final int openingPlies;
+    private final long seed;
+    private final int concurrency;
+
+    private final Map<String, Standing> standings = new LinkedHashMap<>();
+    private long elapsedNanos;
+    private int gameCount;
+
+    /**
+     * Creates a tournament
+     * @param gamesPerPairing the number of games played by every pair of entrants
+     * @param openingPlies the number of random moves that start every game
+     * @param seed the seed of the random openings
+     * @param concurrency the number of games played at the same time
+     */
+    public Tournament(int gamesPerPairing, int openingPlies, long seed, int concurrency)
+    {
+        if (gamesPerPairing <= 0 || openingPlies < 0 || concurrency <= 0)
+        {
+            throw new IllegalArgumentException("Invalid tournament settings");
+        }
+        this.gamesPerPairing = gamesPerPairing;
+        this.openingPlies = openingPlies;
+        this.seed = seed;
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * Plays a tournament between computer players of the specified difficulty levels.
+     * Usage: {@code Tournament <games per pairing> <difficulty> <difficulty> [<difficulty> ...]
+     * [--plies <opening plies>] [--seed <seed>] [--threads <concurrent games>] [--record <file>]}. With
+     * {@code --record} every game is appended to the file, see {@link GameRecordWriter}.
+     */
+    public static void main(String[] args) throws InterruptedException, IOException
+    {
+        String recordPath = null;
+        int openingPlies = DEFAULT_OPENING_PLIES;
+        long seed = System.nanoTime();
+        int concurrency = Runtime.getRuntime().availableProcessors();
+        List<Difficulty> difficulties = new ArrayList<>();
+        for (int i = 1; i < args.length; i++)
+        {
+            switch (args[i])
+            {
+                case "--plies":
+                    openingPlies = Integer.parseInt(args[++i]);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(args[++i]);
+                    break;
+                case "--threads":
+                    concurrency = Integer.parseInt(args[++i]);
+                    break;
+                case "--record":
+                    recordPath = args[++i];
+                    break;
+                default:
+                    difficulties.add(Difficulty.parse(args[i]));
+            }
+        }
+        if (args.length == 0 || difficulties.size() < 2)
+        {
+            System.err.println("Usage: Tournament <games per pairing> <difficulty> <difficulty> [<difficulty> ...] "
+                    + "[--plies <opening plies>] [--seed <seed>] [--threads <concurrent games>] [--record <file>]");
+            System.exit(1);
+        }
+
+        Tournament tournament = new Tournament(Integer.parseInt(args[0]), openingPlies, seed, concurrency);
+        for (Difficulty difficulty : difficulties)
+        {
+            tournament.addEntrant(difficulty.toString(), difficulty::createAI);
+        }
+        if (recordPath == null)
+        {
+            tournament.play(System.out::println);
+        }
+        else
+        {
+            try (GameRecordWriter writer = GameRecordWriter.open(Paths.get(recordPath)))
+            {
+                tournament.play(result ->
+                {
+                    System.out.println(result);
+                    try
+                    {
+                        writer.write(result.getRecord());
+                    }
+                    catch (IOException e)
+                    {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+        }
+        System.out.println(tournament.getSummary());
+    }
+
+    /**
+     * Adds an entrant to the tournament
+     * @param name the unique name of the entrant
+     * @param players creates the players representing the entrant, one for every thread playing games
+     */
+    public void addEntrant(String name, Supplier<Player> players)
+    {
+        if (standings.containsKey(name))
+        {
+            throw new IllegalArgumentException("Duplicate entrant: " + name);
+        }
+        entrants.add(new Entrant(name, players));
+        standings.put(name, new Standing(name));
+    }
+
+    /**
+     * Plays all games of the tournament and waits for them to complete
+     * @param listener receives the result of each game as soon as it completes, on the calling thread
+     */
+    public void play(Consumer<GameResult> listener) throws InterruptedException
+    {
+        List<int[]> openings = createOpenings((gamesPerPairing + 1) / 2);
+
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadFactory threadFactory = runnable ->
+        {
+            Thread thread = new Thread(runnable, "mancala-tournament-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency, threadFactory);
+        CompletionService<GameResult> completionService = new ExecutorCompletionService<>(executor);
+
+        long start = System.nanoTime();
+        int submitted = 0;
+        try
+        {
+            for (int i = 0; i < entrants.size(); i++)
+            {
+                for (int j = i + 1; j < entrants.size(); j++)
+                {
+                    for (int game = 0; game < gamesPerPairing; game++)
+                    {
+                        // Both entrants play each opening once as the first player
+                        boolean swapped = game % 2 == 1;
+                        Entrant left = swapped ? entrants.get(j) : entrants.get(i);
+                        Entrant right = swapped ? entrants.get(i) : entrants.get(j);
+                        int[] opening = openings.get(game / 2);
+                        completionService.submit(() -> playGame(left, right, opening));
+                        submitted++;
+                    }
+                }
+            }
+
+            for (int i = 0; i < submitted; i++)
+            {
+                GameResult result = completionService.take().get();
+                record(result);
+                gameCount++;
+                listener.accept(result);
+            }
+        }
+        catch (ExecutionException e)
+        {
+            throw new IllegalStateException("A tournament game failed", e.getCause());
+        }
+        finally
+        {
+            elapsedNanos = System.nanoTime() - start;
+            executor.shutdownNow();
+        }
+    }
+
+    // Creates openings made of random valid moves that do not end the game
+    private List<int[]> createOpenings(int count)
+    {
+        Random random = new Random(seed);
+        List<int[]> openings = new ArrayList<>();
+        while (openings.size() < count)
+        {
+            GameState state = GameState.getInitialState();
+            int[] opening = new int[openingPlies];
+            for (int ply = 0; ply < openingPlies && !state.gameIsComplete(); ply++)
+            {
+                int move;
+                do
+                {
+                    move = 1 + random.nextInt(GameState.SLOTS_PER_SIDE);
+                }
+                while (!GamePlayer.isValidMove(state, move));
+                opening[ply] = move;
+                state = GamePlayer.performMove(state, move);
+            }
+            if (!state.gameIsComplete())
+            {
+                openings.add(opening);
+            }
+        }
+        return openings;
+    }
+
+    private GameResult playGame(Entrant left, Entrant right, int[] opening)
+    {
+        long start = System.nanoTime();
+        Player leftPlayer = left.players.get();
+        Player rightPlayer = right.players.get();
+        leftPlayer.newGame();
+        rightPlayer.newGame();
+
+        GameState state = GameState.getInitialState();
+        GameRecord record = new GameRecord();
+        for (int move : opening)
+        {
+            state = GamePlayer.performMove(state, move);
+            record.addMove(move);
+        }
+        int moveCount = 0;
+        while (!state.gameIsComplete())
+        {
+            Player player = state.getActivePlayer() == PlayerRepresentation.LEFT ? leftPlayer : rightPlayer;
+            long moveStart = System.nanoTime();
+            int move = player.chooseNextMove(state);
+            if (!GamePlayer.isValidMove(state, move))
+            {
+                throw new IllegalStateException("Entrant chose an invalid move " + move + ": "
+                        + (player == leftPlayer ? left.name : right.name));
+            }
+            record.addMove(move, player, System.nanoTime() - moveStart);
+            state = GamePlayer.performMove(state, move);
+            SearchMetrics.getDefault().recordPlayedMove();
+            moveCount++;
+        }
+
+        Board board = state.getBoard();
+        return new GameResult(left.name, right.name, opening, board.getLeftScore(), board.getRightScore(), moveCount,
+                System.nanoTime() - start, record);
+    }
+
+    private void record(GameResult result)
+    {
+        Standing left = standings.get(result.getLeftName());
+        Standing right = standings.get(result.getRightName());
+        int difference = result.getLeftScore() - result.getRightScore();
+        if (difference > 0)
+        {
+            left.wins++;
+            right.losses++;
+        }
+        else if (difference < 0)
+        {
+            left.losses++;
+            right.wins++;
+        }
+        else
+        {
+            left.draws++;
+            right.draws++;
+        }
+        left.stoneDifference += difference;
+        right.stoneDifference -= difference;
+    }
+
+    /**
+     * Gets the standings of all entrants in the order they were added
+     */
+    public List<Standing> getStandings()
+    {
+        return new ArrayList<>(standings.values());
+    }
+
+    /**
+     * Gets the number of games completed per second of the last call to {@link #play}
+     */
+    public double getGamesPerSecond()
+    {
+        return elapsedNanos == 0 ? 0 : gameCount * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * Gets a table of the standings of all entrants and the throughput of the tournament
+     */
+    public String getSummary()
+    {
+        StringBuilder summary = new StringBuilder();
+        summary.append(String.format("%-12s %6s %6s %6s %6s %8s %8s %10s%n",
+                "Entrant", "Games", "Wins", "Draws", "Losses", "Score", "Elo", "Stones/g"));
+        for (Standing standing : standings.values())
+        {
+            summary.append(standing).append(System.lineSeparator());
+        }
+        summary.append(String.format("%d games in %.1f s (%.2f games/s)",
+                gameCount, elapsedNanos / 1e9, getGamesPerSecond()));
+        return summary.toString();
+    }
+
+    private static class Entrant
+    {
+        private final String name;
+        // The player of the entrant in the current thread
+        private final ThreadLocal<Player> players;
+
+        private Entrant(String name, Supplier<Player> players)
+        {
+            this.name = name;
+            this.players = ThreadLocal.withInitial(players);
+        }
+    }
+
+    /**
+     * The result of a single tournament game
+     */
+    public static class GameResult
+    {
+        private final String leftName;
+        private final String rightName;
+        private final int[] opening;
+        private final int leftScore;
+        private final int rightScore;
+        private final int moveCount;
+        private final long elapsedNanos;
+        private final GameRecord record;
+
+        public GameResult(String leftName, String rightName, int[] opening, int leftScore, int rightScore,
+                          int moveCount, long elapsedNanos, GameRecord record)
+        {
+            this.leftName = leftName;
+            this.rightName = rightName;
+            this.opening = opening.clone();
+            this.leftScore = leftScore;
+            this.rightScore = rightScore;
+            this.moveCount = moveCount;
+            this.elapsedNanos = elapsedNanos;
+            this.record = record;
+        }
+
+        /**
+         * Gets all moves of the game, including the opening
+         */
+        public GameRecord getRecord()
+        {
+            return record;
+        }
+
+        /**
+         * Gets the name of the entrant playing the left side, which moves first
+         */
+        public String getLeftName()
+        {
+            return leftName;
+        }
+
+        public String getRightName()
+        {
+            return rightName;
+        }
+
+        /**
+         * Gets the random moves that started the game
+         */
+        public int[] getOpening()
+        {
+            return opening.clone();
+        }
+
+        public int getLeftScore()
+        {
+            return leftScore;
+        }
+
+        public int getRightScore()
+        {
+            return rightScore;
+        }
+
+        /**
+         * Gets the number of moves chosen by the entrants, not counting the opening
+         */
+        public int getMoveCount()
+        {
+            return moveCount;
+        }
+
+        public long getElapsedNanos()
+        {
+            return elapsedNanos;
+        }
+
+        public String toString()
+        {
+            String outcome = leftScore > rightScore ? "1-0" : leftScore < rightScore ? "0-1" : "1/2-1/2";
+            return String.format("%s vs %s: %d-%d (%s) opening %s, %d moves, %d ms", leftName, rightName,
+                    leftScore, rightScore, outcome, Arrays.toString(opening), moveCount, elapsedNanos / 1_000_000);
+        }
+    }
+
+    /**
+     * The aggregated results of a single entrant against all other entrants
+     */
+    public static class Standing
+    {
+        private final String name;
+        private int wins;
+        private int draws;
+        private int losses;
+        private long stoneDifference;
+
+        private Standing(String name)
+        {
+            this.name = name;
+        }
+
+        public String getName()
+        {
+            return name;
+        }
+
+        public int getWins()
+        {
+            return wins;
+        }
+
+        public int getDraws()
+        {
+            return draws;
+        }
+
+        public int getLosses()
+        {
+            return losses;
+        }
+
+        public int getGameCount()
+        {
+            return wins + draws + losses;
+        }
+
+        /**
+         * Gets the fraction of points scored, counting a draw as half a win
+         */
+        public double getScore()
+        {
+            int games = getGameCount();
+            return games == 0 ? 0.5 : (wins + draws * 0.5) / games;
+        }
+
+        /**
+         * Gets the Elo rating difference between this entrant and the average of its opponents implied by its score.
+         * It is infinite if the entrant won or lost every game.
+         */
+        public double getEloDifference()
+        {
+            return -400 * Math.log10(1 / getScore() - 1);
+        }
+
+        /**
+         * Gets the average number of stones by which this entrant's store exceeded its opponent's
+         */
+        public double getAverageStoneDifference()
+        {
+            int games = getGameCount();
+            return games == 0 ? 0 : (double) stoneDifference / games;
+        }
+
+        public String toString()
+        {
+            return String.format("%-12s %6d %6d %6d %6d %7.1f%% %8.0f %10.2f", name, getGameCount(), wins, draws,
+                    losses, getScore() * 100, getEloDifference(), getAverageStoneDifference());
+        }
+    }
+}
@@ -0,0 +1,204 @@
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fixed-size table of previously evaluated game states, keyed by their Zobrist hash, that is shared by all the
+ * move evaluators of a search.
+ *
+ * Entries are packed into a primitive array and accessed without locks. Each entry is stored as two longs: the
+ * packed data and the hash xor-ed with that data. A probe only accepts an entry if un-xor-ing the two words yields the
+ * requested hash, so an entry torn by concurrent writers is simply treated as a miss.
+ *
+ * The table is organised in buckets of two entries. The first entry of a bucket keeps the deepest result of the
+ * current search and the second entry always receives the most recent result that did not replace the first.
+ */
+public class TranspositionTable
+{
+    /** The stored score is a lower bound of the actual fitness */
+    public static final int LOWER_BOUND = 1;
+    /** The stored score is an upper bound of the actual fitness */
+    public static final int UPPER_BOUND = 2;
+    /** The stored score is the actual fitness */
+    public static final int EXACT = 3;
+
+    public static final int DEFAULT_SIZE_MB = 16;
+
+    private static final int BYTES_PER_ENTRY = 2 * Long.BYTES;
+    private static final int LONGS_PER_BUCKET = 4;
+
+    private static final int MAX_DEPTH = 0xFFF;
+    private static final int MAX_GENERATION = 0x3F;
+
+    // Layout of the data word: score (32 bits) | depth (12 bits) | bound (2 bits) | move (3 bits) | generation (6 bits)
+    private static final int DEPTH_SHIFT = 32;
+    private static final int BOUND_SHIFT = 44;
+    private static final int MOVE_SHIFT = 46;
+    private static final int GENERATION_SHIFT = 49;
+
+    private final long[] entries;
+    private final int bucketMask;
+
+    private volatile int generation;
+
+    private final LongAdder probes = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder stores = new LongAdder();
+
+    /**
+     * Creates a transposition table
+     * @param sizeInMB the maximum amount of memory used by the table. The number of entries is rounded down to a
+     *                 power of two.
+     */
+    public TranspositionTable(int sizeInMB)
+    {
+        if (sizeInMB <= 0)
+        {
+            throw new IllegalArgumentException("Table size must be positive: " + sizeInMB);
+        }
+        long buckets = Long.highestOneBit(((long) sizeInMB << 20) / (2 * BYTES_PER_ENTRY));
+        if (buckets * LONGS_PER_BUCKET > Integer.MAX_VALUE - 8)
+        {
+            buckets = Integer.highestOneBit((Integer.MAX_VALUE - 8) / LONGS_PER_BUCKET);
+        }
+        this.entries = new long[(int) buckets * LONGS_PER_BUCKET];
+        this.bucketMask = (int) buckets - 1;
+    }
+
+    /**
+     * Looks up the entry of the state with the specified hash
+     * @return the packed entry, to be decoded with {@link #getScore}, {@link #getDepth}, {@link #getBound} and
+     *         {@link #getMove}, or 0 if the table does not contain the state
+     */
+    public long probe(long hash)
+    {
+        probes.increment();
+        int index = getBucketIndex(hash);
+        for (int i = index; i < index + LONGS_PER_BUCKET; i += 2)
+        {
+            long data = entries[i + 1];
+            if ((entries[i] ^ data) == hash && data != 0)
+            {
+                hits.increment();
+                return data;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Stores the result of evaluating the state with the specified hash
+     * @param hash the hash of the evaluated state
+     * @param depth the draft of the evaluation, such as the number of levels of moves that were evaluated, which is
+     *              larger for a more thorough evaluation
+     * @param bound one of {@link #LOWER_BOUND}, {@link #UPPER_BOUND} or {@link #EXACT}
+     * @param score the fitness of the state from the perspective of its active player
+     * @param move the best move found in the state, or -1 if none is known
+     */
+    public void store(long hash, int depth, int bound, int score, int move)
+    {
+        int currentGeneration = generation;
+        long data = (score & 0xFFFFFFFFL)
+                | ((long) Math.min(Math.max(depth, 0), MAX_DEPTH) << DEPTH_SHIFT)
+                | ((long) bound << BOUND_SHIFT)
+                | ((long) Math.max(move, 0) << MOVE_SHIFT)
+                | ((long) currentGeneration << GENERATION_SHIFT);
+
+        int index = getBucketIndex(hash);
+        long preferredData = entries[index + 1];
+        boolean replacePreferred = (entries[index] ^ preferredData) == hash
+                || getGeneration(preferredData) != currentGeneration
+                || depth >= getDepth(preferredData);
+        if (!replacePreferred)
+        {
+            index += 2;
+        }
+        entries[index] = hash ^ data;
+        entries[index + 1] = data;
+        stores.increment();
+    }
+
+    /**
+     * Marks the start of a new search. Entries of previous searches remain usable but are the first to be replaced.
+     */
+    public void newSearch()
+    {
+        generation = (generation + 1) & MAX_GENERATION;
+    }
+
+    /**
+     * Removes all entries from the table and resets its counters
+     */
+    public void clear()
+    {
+        Arrays.fill(entries, 0);
+        probes.reset();
+        hits.reset();
+        stores.reset();
+    }
+
+    public static int getScore(long entry)
+    {
+        return (int) entry;
+    }
+
+    public static int getDepth(long entry)
+    {
+        return (int) (entry >>> DEPTH_SHIFT) & MAX_DEPTH;
+    }
+
+    public static int getBound(long entry)
+    {
+        return (int) (entry >>> BOUND_SHIFT) & 0x3;
+    }
+
+    /**
+     * Gets the best move of the entry, or -1 if the entry does not have a best move
+     */
+    public static int getMove(long entry)
+    {
+        int move = (int) (entry >>> MOVE_SHIFT) & 0x7;
+        return move == 0 ? -1 : move;
+    }
+
+    private static int getGeneration(long entry)
+    {
+        return (int) (entry >>> GENERATION_SHIFT) & MAX_GENERATION;
+    }
+
+    private int getBucketIndex(long hash)
+    {
+        return ((int) (hash ^ (hash >>> 32)) & bucketMask) * LONGS_PER_BUCKET;
+    }
+
+    /**
+     * Gets the number of entries the table can hold
+     */
+    public int getCapacity()
+    {
+        return entries.length / 2;
+    }
+
+    public long getProbeCount()
+    {
+        return probes.sum();
+    }
+
+    public long getHitCount()
+    {
+        return hits.sum();
+    }
+
+    public long getStoreCount()
+    {
+        return stores.sum();
+    }
+
+    /**
+     * Gets the fraction of probes that found their state in the table
+     */
+    public double getHitRate()
+    {
+        long probeCount = probes.sum();
+        return probeCount == 0 ? 0 : (double) hits.sum() / probeCount;
+    }
+}
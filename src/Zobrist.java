@@ -0,0 +1,90 @@
+import java.util.SplittableRandom;
+
+/**
+ * Zobrist hashing of game states. Every pit of the board (including both stores) is assigned a random key for each
+ * number of stones it can contain, and the hash of a state is the exclusive or of the keys of all pits and of the
+ * player whose turn it is.
+ *
+ * The keys are generated from a fixed seed so that hashes remain stable between runs.
+ */
+public final class Zobrist
+{
+    /**
+     * The number of pits of a board, including both stores
+     */
+    public static final int PITS = (GameState.SLOTS_PER_SIDE + 1) * 2;
+
+    /**
+     * The total number of stones in a game, which is also the most stones a single pit can contain
+     */
+    public static final int MAX_STONES = GameState.SLOTS_PER_SIDE * 2 * GameState.INITIAL_STONES_PER_SLOT;
+
+    private static final long SEED = 0x6D616E63616C61L;
+
+    private static final long[][] PIT_KEYS = new long[PITS][MAX_STONES + 1];
+    private static final long RIGHT_PLAYER_KEY;
+
+    static
+    {
+        SplittableRandom random = new SplittableRandom(SEED);
+        for (int pit = 0; pit < PITS; pit++)
+        {
+            for (int stones = 0; stones <= MAX_STONES; stones++)
+            {
+                PIT_KEYS[pit][stones] = random.nextLong();
+            }
+        }
+        RIGHT_PLAYER_KEY = random.nextLong();
+    }
+
+    private Zobrist()
+    {
+    }
+
+    /**
+     * Gets the key of the specified pit containing the specified number of stones.
+     * Pits are numbered in the order stones are sown: the left player's slots from slot 6 to slot 1 are pits 0 to 5
+     * followed by their store in pit 6, and the right player's slots from slot 6 to slot 1 are pits 7 to 12 followed
+     * by their store in pit 13.
+     */
+    public static long pitKey(int pit, int stones)
+    {
+        return PIT_KEYS[pit][stones];
+    }
+
+    /**
+     * Gets the key that is included in the hash whenever the specified player is the active player
+     */
+    public static long activePlayerKey(PlayerRepresentation activePlayer)
+    {
+        return activePlayer == PlayerRepresentation.RIGHT ? RIGHT_PLAYER_KEY : 0;
+    }
+
+    /**
+     * Calculates the hash of the specified game state
+     */
+    public static long hash(GameState state)
+    {
+        PlayerRepresentation activePlayer = state.getActivePlayer();
+        int activeStore = getStorePit(activePlayer);
+        int opponentStore = getStorePit(PlayerRepresentation.getOpposite(activePlayer));
+
+        int[] slots = state.getSlots();
+        int[] opponentSlots = state.getOpponentSlots();
+
+        long hash = activePlayerKey(activePlayer);
+        for (int i = 0; i < GameState.SLOTS_PER_SIDE; i++)
+        {
+            hash ^= pitKey(activeStore - i - 1, slots[i]);
+            hash ^= pitKey(opponentStore - i - 1, opponentSlots[i]);
+        }
+        hash ^= pitKey(activeStore, state.getScore());
+        hash ^= pitKey(opponentStore, state.getOpponentScore());
+        return hash;
+    }
+
+    private static int getStorePit(PlayerRepresentation player)
+    {
+        return player == PlayerRepresentation.LEFT ? GameState.SLOTS_PER_SIDE : PITS - 1;
+    }
+}